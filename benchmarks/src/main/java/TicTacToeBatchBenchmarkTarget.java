@@ -0,0 +1,70 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import benchmarks.TicTacToeBatchWorkload;
+
+/**
+ * 
+ * This class runs TicTacToeBatchEvaluator for the JMH benchmarks. The
+ * batch is made of boards from random games with the AI to move, with
+ * a fixed seed so every run measures the same boards.
+ *
+ */
+public class TicTacToeBatchBenchmarkTarget implements TicTacToeBatchWorkload {
+	
+	private TicTacToeController controller = new TicTacToeController();
+	private ForkJoinPool pool;
+	private TicTacToeBatchEvaluator evaluator;
+	private int[] positions;
+	
+	@Override
+	public void setUp(int size, int threads, String engine) {
+		if (engine.equals("heuristic")) {
+			this.controller.setStrategy(null);
+		} else if (engine.equals("perfect")) {
+			this.controller.setStrategy(new TicTacToePerfectStrategy());
+		} else if (engine.equals("search")) {
+			this.controller.setStrategy(new TicTacToeSearchStrategy());
+		} else {
+			throw new IllegalArgumentException("Unknown engine: " + engine);
+		}
+		this.pool = new ForkJoinPool(threads == 0 ? Runtime.getRuntime().availableProcessors() : threads);
+		this.evaluator = new TicTacToeBatchEvaluator(this.controller, this.pool);
+		
+		Random random = new Random(42);
+		this.positions = new int[size];
+		for (int i = 0; i < size; ++i) {
+			// an even number of random moves leaves the AI to move, as if the user started
+			int packed = TicTacToeBitboard.EMPTY;
+			int moves = 2 * random.nextInt(4);
+			for (int m = 0; m < moves; ++m) {
+				int empty = TicTacToeBitboard.emptyCells(packed);
+				int cell;
+				do {
+					cell = random.nextInt(TicTacToeBitboard.CELLS);
+				} while ((empty & (1 << cell)) == 0);
+				packed = TicTacToeBitboard.place(packed, cell, m % 2 == 0 ? 1 : 2);
+			}
+			this.positions[i] = packed;
+		}
+	}
+	
+	@Override
+	public int[] batch() {
+		return this.evaluator.getAIPositions(this.positions);
+	}
+	
+	@Override
+	public int[] loop() {
+		int[] moves = new int[this.positions.length];
+		for (int i = 0; i < moves.length; ++i) {
+			moves[i] = this.controller.getAIPosition(this.positions[i]);
+		}
+		return moves;
+	}
+	
+	@Override
+	public void tearDown() {
+		this.pool.shutdown();
+	}
+}
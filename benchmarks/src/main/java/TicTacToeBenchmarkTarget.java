@@ -0,0 +1,103 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import benchmarks.TicTacToeWorkload;
+
+/**
+ * 
+ * This class runs the game code for the JMH benchmarks over a fixed
+ * corpus of positions. Every position is a board where it is the AI's
+ * turn, plus the cell that was moved last for checkStateAfterMove().
+ *
+ */
+public class TicTacToeBenchmarkTarget implements TicTacToeWorkload {
+	
+	private TicTacToeController controller = new TicTacToeController();
+	private TicTacToeView view = new TicTacToeView();
+	private int[][] board;
+	private int lastRow;
+	private int lastCol;
+	private PrintStream savedOut;
+	
+	@Override
+	public void setUp(String position, String engine) {
+		if (position.equals("empty")) {
+			this.board = new int[][] {{0, 0, 0}, {0, 0, 0}, {0, 0, 0}};
+			this.lastRow = 0;
+			this.lastCol = 0;
+		} else if (position.equals("midGame")) {
+			this.board = new int[][] {{1, 0, 0}, {0, 2, 0}, {0, 0, 1}};
+			this.lastRow = 2;
+			this.lastCol = 2;
+		} else if (position.equals("forcedDefense")) {
+			this.board = new int[][] {{1, 1, 0}, {0, 2, 0}, {0, 0, 0}};
+			this.lastRow = 0;
+			this.lastCol = 1;
+		} else if (position.equals("nearFull")) {
+			this.board = new int[][] {{1, 2, 1}, {2, 2, 1}, {1, 0, 0}};
+			this.lastRow = 2;
+			this.lastCol = 0;
+		} else {
+			throw new IllegalArgumentException("Unknown position: " + position);
+		}
+		
+		if (engine.equals("heuristic")) {
+			this.controller.setStrategy(null);
+		} else if (engine.equals("perfect")) {
+			this.controller.setStrategy(new TicTacToePerfectStrategy());
+		} else if (engine.equals("search")) {
+			this.controller.setStrategy(new TicTacToeSearchStrategy());
+		} else {
+			throw new IllegalArgumentException("Unknown engine: " + engine);
+		}
+		
+		// printBoard() writes to System.out, measure the formatting and not the console
+		this.savedOut = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+			
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+	}
+	
+	@Override
+	public void enableMetrics(boolean enabled) {
+		this.controller.setMetrics(enabled ? new TicTacToeMetrics() : null);
+	}
+	
+	@Override
+	public int[] getAIPosition() {
+		return this.controller.getAIPosition(this.board);
+	}
+	
+	@Override
+	public int[] selectBasedOnHeuristics() {
+		return this.controller.selectBasedOnHeuristics(this.board);
+	}
+	
+	@Override
+	public int userWillDefend() {
+		return this.controller.userWillDefend(this.board);
+	}
+	
+	@Override
+	public boolean checkStateAfterMove() {
+		return this.controller.checkStateAfterMove(this.lastRow, this.lastCol, this.board);
+	}
+	
+	@Override
+	public void printBoard() {
+		this.view.printBoard(this.board);
+	}
+	
+	@Override
+	public void tearDown() {
+		if (this.savedOut != null) {
+			System.setOut(this.savedOut);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 
+ * Throughput of TicTacToeBatchEvaluator on a batch of boards from random
+ * games, on 1, 4 and all cores (threads = 0), against the plain loop of
+ * getAIPosition() calls it replaces. One op is one whole batch.
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar TicTacToeBatchBenchmark
+ * </pre>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicTacToeBatchBenchmark {
+	
+	@Param({"100000"})
+	public int size;
+	
+	@Param({"1", "4", "0"})
+	public int threads;
+	
+	@Param({"heuristic", "search"})
+	public String engine;
+	
+	private TicTacToeBatchWorkload workload;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws ReflectiveOperationException {
+		this.workload = (TicTacToeBatchWorkload) Class.forName("TicTacToeBatchBenchmarkTarget").newInstance();
+		this.workload.setUp(this.size, this.threads, this.engine);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.workload.tearDown();
+	}
+	
+	@Benchmark
+	public int[] batch() {
+		return this.workload.batch();
+	}
+	
+	@Benchmark
+	public int[] loop() {
+		return this.workload.loop();
+	}
+}
@@ -0,0 +1,32 @@
+package benchmarks;
+
+/**
+ * 
+ * The batch side of TicTacToeWorkload, implemented by
+ * TicTacToeBatchBenchmarkTarget in the default package.
+ *
+ */
+public interface TicTacToeBatchWorkload {
+	
+	/**
+	 * @param size number of boards in the batch
+	 * @param threads threads of the pool, 0 for all cores
+	 * @param engine "heuristic", "perfect" or "search"
+	 */
+	void setUp(int size, int threads, String engine);
+	
+	/**
+	 * @return the batch evaluated with TicTacToeBatchEvaluator
+	 */
+	int[] batch();
+	
+	/**
+	 * @return the batch evaluated with one getAIPosition() call per board
+	 */
+	int[] loop();
+	
+	/**
+	 * stop the pool
+	 */
+	void tearDown();
+}
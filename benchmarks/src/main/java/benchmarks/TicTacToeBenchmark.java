@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 
+ * Benchmarks for the AI decision path over the fixed position corpus
+ * in TicTacToeBenchmarkTarget. Every benchmark reports ops/sec and
+ * ns/op; run with the gc profiler to get the allocation rate:
+ * 
+ * <pre>
+ * cd benchmarks
+ * mvn -B package
+ * java -jar target/benchmarks.jar -prof gc
+ * </pre>
+ * 
+ * The engine parameter runs getAIPosition() with each strategy side by side.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicTacToeBenchmark {
+	
+	@Param({"empty", "midGame", "forcedDefense", "nearFull"})
+	public String position;
+	
+	@Param({"heuristic", "perfect", "search"})
+	public String engine;
+	
+	private TicTacToeWorkload workload;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws ReflectiveOperationException {
+		this.workload = (TicTacToeWorkload) Class.forName("TicTacToeBenchmarkTarget").newInstance();
+		this.workload.setUp(this.position, this.engine);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.workload.tearDown();
+	}
+	
+	@Benchmark
+	public int[] getAIPosition() {
+		return this.workload.getAIPosition();
+	}
+	
+	@Benchmark
+	public int[] selectBasedOnHeuristics() {
+		return this.workload.selectBasedOnHeuristics();
+	}
+	
+	@Benchmark
+	public int userWillDefend() {
+		return this.workload.userWillDefend();
+	}
+	
+	@Benchmark
+	public boolean checkStateAfterMove() {
+		return this.workload.checkStateAfterMove();
+	}
+	
+	@Benchmark
+	public void printBoard() {
+		this.workload.printBoard();
+	}
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 
+ * Cost of recording decision metrics (TicTacToeMetrics) on the
+ * heuristic decision path. The metrics parameter runs getAIPosition()
+ * with recording off and on side by side:
+ * 
+ * <pre>
+ * cd benchmarks
+ * mvn -B package
+ * java -jar target/benchmarks.jar TicTacToeMetricsBenchmark
+ * </pre>
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicTacToeMetricsBenchmark {
+	
+	@Param({"empty", "midGame", "forcedDefense", "nearFull"})
+	public String position;
+	
+	@Param({"off", "on"})
+	public String metrics;
+	
+	private TicTacToeWorkload workload;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws ReflectiveOperationException {
+		this.workload = (TicTacToeWorkload) Class.forName("TicTacToeBenchmarkTarget").newInstance();
+		this.workload.setUp(this.position, "heuristic");
+		this.workload.enableMetrics(this.metrics.equals("on"));
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.workload.tearDown();
+	}
+	
+	@Benchmark
+	public int[] getAIPosition() {
+		return this.workload.getAIPosition();
+	}
+	
+	@Benchmark
+	public boolean checkStateAfterMove() {
+		return this.workload.checkStateAfterMove();
+	}
+}
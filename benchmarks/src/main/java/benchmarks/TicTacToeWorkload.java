@@ -0,0 +1,39 @@
+package benchmarks;
+
+/**
+ * 
+ * JMH does not accept benchmark classes in the default package, and
+ * a named package cannot refer to the game classes, which are all in
+ * the default package. The game side implements this interface
+ * (TicTacToeBenchmarkTarget) and the benchmarks load it by name once
+ * in their setup, so the measured calls are plain interface calls.
+ *
+ */
+public interface TicTacToeWorkload {
+	
+	/**
+	 * @param position name of a position in the corpus
+	 * @param engine "heuristic", "perfect" or "search"
+	 */
+	void setUp(String position, String engine);
+	
+	/**
+	 * @param enabled true to record decision metrics in the controller
+	 */
+	void enableMetrics(boolean enabled);
+	
+	int[] getAIPosition();
+	
+	int[] selectBasedOnHeuristics();
+	
+	int userWillDefend();
+	
+	boolean checkStateAfterMove();
+	
+	void printBoard();
+	
+	/**
+	 * restore anything changed by setUp()
+	 */
+	void tearDown();
+}
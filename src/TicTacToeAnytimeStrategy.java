@@ -0,0 +1,20 @@
+
+/**
+ * 
+ * A strategy that can improve its answer the longer it runs, and
+ * can be stopped at any time with the best move found so far.
+ *
+ */
+public interface TicTacToeAnytimeStrategy extends TicTacToeStrategy {
+	
+	/**
+	 * This selectMove() method searches until it is done or the deadline
+	 * expires. If nothing was found in time, the fallback is returned.
+	 * 
+	 * @param packed packed game board, AI to move
+	 * @param deadline time budget of this decision
+	 * @param fallback cell to return if the search had no answer in time
+	 * @return the cell index that AI will move
+	 */
+	int selectMove(int packed, TicTacToeDeadline deadline, int fallback);
+}
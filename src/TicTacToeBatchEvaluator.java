@@ -0,0 +1,167 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ *
+ * This class evaluates many packed boards in one call, for analytics
+ * jobs that would otherwise call getAIPosition() in a loop on one core.
+ * A batch is first reduced to its distinct boards, since a game corpus
+ * repeats the same openings many times. The distinct boards are then
+ * split into ranges on a ForkJoinPool, and every result is copied back
+ * to each place its board appeared.
+ *
+ */
+public class TicTacToeBatchEvaluator {
+
+	// boards per task before it is split again
+	private static final int THRESHOLD = 1 << 8;
+
+	private static final int EVALUATE = 0;
+	private static final int MOVE = 1;
+
+	private final TicTacToeController controller;
+	private final ForkJoinPool pool;
+
+	/**
+	 * @param controller controller that decides the moves, with its strategy
+	 * @param pool pool that runs the batches
+	 */
+	public TicTacToeBatchEvaluator(TicTacToeController controller, ForkJoinPool pool) {
+		this.controller = controller;
+		this.pool = pool;
+	}
+
+	/**
+	 * This evaluateAll() method runs TicTacToeController.evaluate() on
+	 * every board, which gives the heuristic move and the branch that
+	 * decided it. Use evaluationCell() and evaluationBranch() to read
+	 * the results.
+	 *
+	 * @param positions packed boards, AI to move
+	 * @return packed evaluations, in the same order
+	 */
+	public int[] evaluateAll(int[] positions) {
+		return this.run(positions, EVALUATE);
+	}
+
+	/**
+	 * @param positions packed boards, AI to move
+	 * @return packed evaluations, in the order of the stream
+	 */
+	public int[] evaluateAll(IntStream positions) {
+		return this.run(positions.toArray(), EVALUATE);
+	}
+
+	/**
+	 * This getAIPositions() method runs getAIPosition() on every board,
+	 * so the selected strategy of the controller decides the moves
+	 *
+	 * @param positions packed boards, AI to move
+	 * @return the cells that AI will move, -1 for a full board, in the same order
+	 */
+	public int[] getAIPositions(int[] positions) {
+		return this.run(positions, MOVE);
+	}
+
+	/**
+	 * @param positions packed boards, AI to move
+	 * @return the cells that AI will move, -1 for a full board, in the order of the stream
+	 */
+	public int[] getAIPositions(IntStream positions) {
+		return this.run(positions.toArray(), MOVE);
+	}
+
+	private int[] run(int[] positions, int operation) {
+		// index[i] = place of positions[i] in the distinct boards
+		int[] index = new int[positions.length];
+		int[] distinct = distinct(positions, index);
+		int[] distinctResults = new int[distinct.length];
+		if (distinct.length <= THRESHOLD) {
+			new BatchTask(distinct, distinctResults, 0, distinct.length, operation).compute();
+		} else {
+			this.pool.invoke(new BatchTask(distinct, distinctResults, 0, distinct.length, operation));
+		}
+		int[] results = new int[positions.length];
+		for (int i = 0; i < positions.length; ++i) {
+			results[i] = distinctResults[index[i]];
+		}
+		return results;
+	}
+
+	/**
+	 * Finds the distinct boards with an open addressing hash table. A
+	 * packed board is 18 bits, so there are never more than 2^18 of them.
+	 *
+	 * @param positions packed boards
+	 * @param index filled with the place of every board in the result
+	 * @return the distinct boards, in the order they first appear
+	 */
+	private static int[] distinct(int[] positions, int[] index) {
+		int capacity = Integer.highestOneBit(Math.max(16, Math.min(positions.length, 1 << 18) * 2 - 1)) << 1;
+		int mask = capacity - 1;
+		int[] keys = new int[capacity];
+		int[] slots = new int[capacity];
+		Arrays.fill(keys, -1);
+		int[] distinct = new int[Math.min(positions.length, 1 << 18)];
+		int count = 0;
+		for (int i = 0; i < positions.length; ++i) {
+			int packed = positions[i];
+			int slot = (packed * 0x9E3779B1) >>> 8 & mask;
+			while (keys[slot] != -1 && keys[slot] != packed) {
+				slot = (slot + 1) & mask;
+			}
+			if (keys[slot] == -1) {
+				keys[slot] = packed;
+				slots[slot] = count;
+				distinct[count++] = packed;
+			}
+			index[i] = slots[slot];
+		}
+		return Arrays.copyOf(distinct, count);
+	}
+
+	/**
+	 *
+	 * Evaluates the boards from (inclusive) to to (exclusive), splitting
+	 * the range in half while it is larger than THRESHOLD.
+	 *
+	 */
+	private class BatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] positions;
+		private final int[] results;
+		private final int from;
+		private final int to;
+		private final int operation;
+
+		BatchTask(int[] positions, int[] results, int from, int to, int operation) {
+			this.positions = positions;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.operation = operation;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= THRESHOLD) {
+				for (int i = this.from; i < this.to; ++i) {
+					if (this.operation == EVALUATE) {
+						this.results[i] = controller.evaluate(this.positions[i]);
+					} else if (TicTacToeBitboard.emptyCells(this.positions[i]) == 0) {
+						// a strategy is never asked about a full board
+						this.results[i] = -1;
+					} else {
+						this.results[i] = controller.getAIPosition(this.positions[i]);
+					}
+				}
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new BatchTask(this.positions, this.results, this.from, middle, this.operation),
+					new BatchTask(this.positions, this.results, middle, this.to, this.operation));
+		}
+	}
+}
@@ -0,0 +1,266 @@
+
+/**
+ *
+ * This class holds the packed representation of the game board.
+ * A board is a single int where bits 0 - 8 are the user's (X) pieces
+ * and bits 9 - 17 are the AI's (O) pieces. Cell i is row i / 3,
+ * column i % 3, so iterating the bits from low to high visits the
+ * board in the same row-by-row order as the int[3][3] loops.
+ *
+ */
+public final class TicTacToeBitboard {
+
+	public static final int CELLS = 9;
+	public static final int SHIFT = 9;
+	public static final int FULL = 0x1FF;
+	public static final int EMPTY = 0;
+
+	public static final int[] ROWS = {0x007, 0x038, 0x1C0};
+	public static final int[] COLUMNS = {0x049, 0x092, 0x124};
+	public static final int LEFT_DIAGONAL = 0x111;
+	public static final int RIGHT_DIAGONAL = 0x054;
+	public static final int DIAGONAL_CELLS = LEFT_DIAGONAL | RIGHT_DIAGONAL;
+	public static final int CENTER = 4;
+
+	/**
+	 * all 8 winning lines: 3 rows, 3 columns and 2 diagonals
+	 */
+	public static final int[] LINES = {
+		ROWS[0], ROWS[1], ROWS[2],
+		COLUMNS[0], COLUMNS[1], COLUMNS[2],
+		LEFT_DIAGONAL, RIGHT_DIAGONAL
+	};
+
+	/**
+	 * number of base 3 board indexes, 3^9
+	 */
+	public static final int POSITIONS = 19683;
+
+	// TERNARY[mask] is the base 3 value of a 9-bit mask with digit 1 on every bit
+	private static final int[] TERNARY = new int[FULL + 1];
+
+	static {
+		for (int mask = 1; mask <= FULL; ++mask) {
+			int low = Integer.numberOfTrailingZeros(mask);
+			int pow3 = 1;
+			for (int i = 0; i < low; ++i) {
+				pow3 *= 3;
+			}
+			TERNARY[mask] = TERNARY[mask & (mask - 1)] + pow3;
+		}
+	}
+
+	private TicTacToeBitboard() {
+	}
+
+	/**
+	 * This pack() method is the adapter from the int[3][3] game board
+	 * (0 = empty, 1 = user, 2 = AI) to the packed representation
+	 *
+	 * @param board game board
+	 * @return packed board
+	 */
+	public static int pack(int[][] board) {
+		int packed = EMPTY;
+		for (int i = 0; i < 3; ++i) {
+			int[] line = board[i];
+			for (int j = 0; j < 3; ++j) {
+				int player = line[j];
+				if (player != 0) {
+					packed |= 1 << (i * 3 + j + (player - 1) * SHIFT);
+				}
+			}
+		}
+		return packed;
+	}
+
+	/**
+	 * This unpack() method writes a packed board back into an
+	 * existing int[3][3] game board
+	 *
+	 * @param packed packed board
+	 * @param board game board that will be overwritten
+	 */
+	public static void unpack(int packed, int[][] board) {
+		for (int i = 0; i < 3; ++i) {
+			for (int j = 0; j < 3; ++j) {
+				board[i][j] = get(packed, i * 3 + j);
+			}
+		}
+	}
+
+	/**
+	 * This creates a new int[3][3] game board from a packed board
+	 *
+	 * @param packed packed board
+	 * @return a new game board
+	 */
+	public static int[][] toArray(int packed) {
+		int[][] board = new int[3][3];
+		unpack(packed, board);
+		return board;
+	}
+
+	/**
+	 * @param row row position
+	 * @param col column position
+	 * @return the cell index of the position
+	 */
+	public static int cell(int row, int col) {
+		return row * 3 + col;
+	}
+
+	/**
+	 * @param cell cell index
+	 * @return row of the cell
+	 */
+	public static int row(int cell) {
+		return cell / 3;
+	}
+
+	/**
+	 * @param cell cell index
+	 * @return column of the cell
+	 */
+	public static int column(int cell) {
+		return cell % 3;
+	}
+
+	/**
+	 * This returns the 9-bit mask of the pieces owned by a player
+	 *
+	 * @param packed packed board
+	 * @param player 1 for user, 2 for AI
+	 * @return mask of the player's pieces
+	 */
+	public static int mask(int packed, int player) {
+		return player == 1 ? packed & FULL : (packed >>> SHIFT) & FULL;
+	}
+
+	/**
+	 * @param packed packed board
+	 * @return mask of the empty cells
+	 */
+	public static int emptyCells(int packed) {
+		return ~(packed | (packed >>> SHIFT)) & FULL;
+	}
+
+	/**
+	 * @param packed packed board
+	 * @return number of pieces on the board
+	 */
+	public static int count(int packed) {
+		return Integer.bitCount(packed);
+	}
+
+	/**
+	 * This get() method returns who occupies the cell
+	 *
+	 * @param packed packed board
+	 * @param cell cell index
+	 * @return 0 if the cell is empty, 1 for user, 2 for AI
+	 */
+	public static int get(int packed, int cell) {
+		if ((packed & (1 << cell)) != 0) {
+			return 1;
+		}
+		if ((packed & (1 << (cell + SHIFT))) != 0) {
+			return 2;
+		}
+		return 0;
+	}
+
+	/**
+	 * This place() method returns the board after a player
+	 * puts a piece on the cell. The cell is assumed to be empty.
+	 *
+	 * @param packed packed board
+	 * @param cell cell index
+	 * @param player 1 for user, 2 for AI
+	 * @return the new packed board
+	 */
+	public static int place(int packed, int cell, int player) {
+		return packed | (1 << (cell + (player - 1) * SHIFT));
+	}
+
+	/**
+	 * This swap() method exchanges the user's and the AI's pieces, so
+	 * logic written for the AI can be used to move for the user
+	 *
+	 * @param packed packed board
+	 * @return the board with the two players swapped
+	 */
+	public static int swap(int packed) {
+		return ((packed & FULL) << SHIFT) | ((packed >>> SHIFT) & FULL);
+	}
+
+	/**
+	 * @param mask 9-bit mask of one player's pieces
+	 * @return true if the mask covers any of the 8 winning lines
+	 */
+	public static boolean isWin(int mask) {
+		for (int line : LINES) {
+			if ((mask & line) == line) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This winCells() method finds every empty cell where a player
+	 * wins by moving there: the missing cell of a line where the
+	 * player has 2 pieces and the opponent none
+	 *
+	 * @param mover 9-bit mask of the pieces of the player who moves
+	 * @param other 9-bit mask of the opponent's pieces
+	 * @return mask of the winning cells
+	 */
+	public static int winCells(int mover, int other) {
+		int cells = 0;
+		for (int line : LINES) {
+			int missing = line & ~mover;
+			if ((missing & (missing - 1)) == 0 && (other & line) == 0) {
+				cells |= missing;
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * @param cell cell index
+	 * @return true if the cell is on either diagonal
+	 */
+	public static boolean isDiagonal(int cell) {
+		return ((DIAGONAL_CELLS >>> cell) & 1) != 0;
+	}
+
+	/**
+	 * This index() method converts a packed board into its base 3 index
+	 * (0 = empty, 1 = user, 2 = AI, cell 0 is the lowest digit)
+	 *
+	 * @param packed packed board
+	 * @return index in 0 .. POSITIONS - 1
+	 */
+	public static int index(int packed) {
+		return TERNARY[packed & FULL] + 2 * TERNARY[(packed >>> SHIFT) & FULL];
+	}
+
+	/**
+	 * This fromIndex() method converts a base 3 index back into a packed board
+	 *
+	 * @param index index in 0 .. POSITIONS - 1
+	 * @return packed board
+	 */
+	public static int fromIndex(int index) {
+		int packed = EMPTY;
+		for (int cell = 0; cell < CELLS; ++cell) {
+			int player = index % 3;
+			if (player != 0) {
+				packed = place(packed, cell, player);
+			}
+			index /= 3;
+		}
+		return packed;
+	}
+}
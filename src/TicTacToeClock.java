@@ -0,0 +1,25 @@
+
+/**
+ * 
+ * A source of time in nanoseconds, like System.nanoTime(). Code with
+ * deadlines reads the time through a clock, so a test can move the
+ * time forward by hand instead of waiting.
+ *
+ */
+public interface TicTacToeClock {
+	
+	/**
+	 * the clock of the JVM, System.nanoTime()
+	 */
+	TicTacToeClock SYSTEM = new TicTacToeClock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+	
+	/**
+	 * @return the current time in nanoseconds, only differences between two calls are meaningful
+	 */
+	long nanoTime();
+}
@@ -1,6 +1,3 @@
-import java.util.Comparator;
-import java.util.PriorityQueue;
-
 
 /**
  * 
@@ -8,14 +5,32 @@ import java.util.PriorityQueue;
  * for TicTacToe game, including determining best move,
  * place that must be defended, and heuristics for selecting
  * position.
+ * 
+ * Every evaluation is side-effect free: the packed methods work on
+ * int values, and the int[][] methods only read the board they are
+ * given. A single controller can therefore be shared by many threads,
+ * as long as a board is not changed while it is being evaluated.
  *
  */
 public class TicTacToeController {
 
+	public static final int BRANCH_NONE = 0;
+	public static final int BRANCH_WIN = 1;
+	public static final int BRANCH_DEFEND = 2;
+	public static final int BRANCH_HEURISTIC = 3;
+	
+	private static final int NO_CELL = 0x0F;
+	
+	// null means the heuristic logic of this class
+	private volatile TicTacToeStrategy strategy = null;
+	// null means nothing is recorded
+	private volatile TicTacToeMetrics metrics = null;
+	private volatile TicTacToeWeights weights = TicTacToeWeights.DEFAULT;
 	
 	/**
 	 * In this getAIPosition() method, the current best move will be determined.
-	 * The highest priority is to pick the position where win is immediately
+	 * If a strategy has been selected with setStrategy(), it will decide the move.
+	 * Otherwise the highest priority is to pick the position where win is immediately
 	 * possible. If not, it will pick the position that AI must defend now to
 	 * prevent a loss. If note, the board will pick based on the defend/attack
 	 * heuristic.
@@ -24,57 +39,273 @@ public class TicTacToeController {
 	 * @return the position that AI will move
 	 */
 	public int[] getAIPosition(int[][] board) {
-		int [] win_move = this.existWinMove(board);
-		if (win_move[0] != -1 && win_move[1] != -1) {
-			return win_move;
+		return toPosition(this.getAIPosition(TicTacToeBitboard.pack(board)));
+	}
+	
+	/**
+	 * Packed version of getAIPosition(), it uses the selected strategy too
+	 * 
+	 * @param packed packed game board
+	 * @return the cell that AI will move
+	 */
+	public int getAIPosition(int packed) {
+		if (this.metrics != null) {
+			return evaluationCell(this.getAIDecision(packed));
 		}
-		int [] defend_move = this.existMustDefend(board, 2);
-		if (defend_move[0] != -1 && defend_move[1] != -1) {
-			return defend_move;
+		TicTacToeStrategy selected = this.strategy;
+		if (selected != null) {
+			return selected.selectMove(packed);
+		}
+		return this.getAIMove(packed);
+	}
+
+	/**
+	 * This getAIDecision() method is getAIPosition() that also reports
+	 * the branch that decided, packed like evaluate(). BRANCH_NONE means
+	 * the selected strategy decided. The decision is recorded in the
+	 * metrics, if they are set.
+	 *
+	 * @param packed packed game board
+	 * @return the packed decision, read it with evaluationCell() and evaluationBranch()
+	 */
+	public int getAIDecision(int packed) {
+		TicTacToeMetrics recording = this.metrics;
+		long start = recording != null ? System.nanoTime() : 0;
+		int decision = this.decide(packed);
+		if (recording != null) {
+			recordDecision(recording, System.nanoTime() - start, packed, decision);
+		}
+		return decision;
+	}
+
+	/**
+	 * This decide() method makes the decision of getAIDecision() without
+	 * recording it, for moves that may be thrown away
+	 *
+	 * @param packed packed game board
+	 * @return the packed decision
+	 */
+	public int decide(int packed) {
+		TicTacToeStrategy selected = this.strategy;
+		if (selected != null) {
+			return decision(BRANCH_NONE, selected.selectMove(packed));
+		}
+		return this.evaluate(packed);
+	}
+
+	/**
+	 * This getAIPosition() method decides the move within a time budget.
+	 * The heuristic move is found first, it takes microseconds and is the
+	 * answer if nothing better is found in time. A strategy that can be
+	 * stopped (TicTacToeAnytimeStrategy) then searches until the deadline,
+	 * other strategies are asked as usual.
+	 *
+	 * @param board game board
+	 * @param deadline time budget of this move, it can also be cancelled from another thread
+	 * @return the position that AI will move
+	 */
+	public int[] getAIPosition(int[][] board, TicTacToeDeadline deadline) {
+		return toPosition(this.getAIPosition(TicTacToeBitboard.pack(board), deadline));
+	}
+
+	/**
+	 * getAIPosition() with a budget on the system clock
+	 *
+	 * @param board game board
+	 * @param budgetNanos time allowed for the move, in nanoseconds
+	 * @return the position that AI will move
+	 */
+	public int[] getAIPosition(int[][] board, long budgetNanos) {
+		return this.getAIPosition(board, TicTacToeDeadline.after(budgetNanos));
+	}
+
+	/**
+	 * Packed version of getAIPosition() with a deadline
+	 *
+	 * @param packed packed game board
+	 * @param deadline time budget of this move
+	 * @return the cell that AI will move
+	 */
+	public int getAIPosition(int packed, TicTacToeDeadline deadline) {
+		return evaluationCell(this.getAIDecision(packed, deadline));
+	}
+
+	/**
+	 * getAIDecision() with a deadline
+	 *
+	 * @param packed packed game board
+	 * @param deadline time budget of this move
+	 * @return the packed decision
+	 */
+	public int getAIDecision(int packed, TicTacToeDeadline deadline) {
+		TicTacToeMetrics recording = this.metrics;
+		long start = recording != null ? System.nanoTime() : 0;
+		int decision = this.decide(packed, deadline);
+		if (recording != null) {
+			recordDecision(recording, System.nanoTime() - start, packed, decision);
+		}
+		return decision;
+	}
+
+	/**
+	 * decide() with a deadline, see getAIPosition(int, TicTacToeDeadline)
+	 *
+	 * @param packed packed game board
+	 * @param deadline time budget of this move
+	 * @return the packed decision
+	 */
+	public int decide(int packed, TicTacToeDeadline deadline) {
+		int evaluation = this.evaluate(packed);
+		int fallback = evaluationCell(evaluation);
+		TicTacToeStrategy selected = this.strategy;
+		if (selected != null && fallback != -1) {
+			if (!(selected instanceof TicTacToeAnytimeStrategy)) {
+				return decision(BRANCH_NONE, selected.selectMove(packed));
+			} else if (!deadline.isExpired()) {
+				return decision(BRANCH_NONE, ((TicTacToeAnytimeStrategy) selected).selectMove(packed, deadline, fallback));
+			}
 		}
-		int [] selected = this.selectBasedOnHeuristics(board);
-		return selected;
+		return evaluation;
+	}
+
+	/**
+	 * This recordDecision() method counts a decision in the metrics
+	 *
+	 * @param recording metrics to update
+	 * @param nanos time the decision took
+	 * @param packed packed game board
+	 * @param decision the packed decision
+	 */
+	static void recordDecision(TicTacToeMetrics recording, long nanos, int packed, int decision) {
+		int branch = evaluationBranch(decision);
+		int candidates = branch == BRANCH_HEURISTIC ? Integer.bitCount(TicTacToeBitboard.emptyCells(packed)) : 0;
+		recording.recordDecision(nanos, branch, candidates);
+	}
+
+	/**
+	 * Packed version of the heuristic logic in getAIPosition(). It
+	 * always uses the heuristics, whatever strategy is selected.
+	 * 
+	 * @param packed packed game board
+	 * @return the cell that AI will move
+	 */
+	public int getAIMove(int packed) {
+		return evaluationCell(this.evaluate(packed));
 	}
 	
 	/**
+	 * This evaluate() method runs the heuristic logic of getAIPosition()
+	 * and reports both the move and which branch decided it. The result
+	 * is packed into an int: the low 4 bits are the cell and the next
+	 * 2 bits are the branch, read them with evaluationCell() and
+	 * evaluationBranch().
 	 * 
-	 * this is a private class that I use as model. It is in the
-	 * same file because this require some function calls from 
-	 * TicTacToeController class. This class will be used
-	 * when we are determining our heuristic
-	 *
+	 * @param packed packed game board
+	 * @return the packed evaluation
 	 */
-	private class gameModel {
-		private int risk;
-		private int attackHeu;
-		private TicTacToeController controller;
-		private int[] position = new int[2];
-		gameModel(int row, int col, int[][] board){
-			this.position[0] = row;
-			this.position[1] = col;
-			this.controller = new TicTacToeController();
-			this.risk = this.controller.userWillDefend(board);
-			this.attackHeu = this.controller.calculateAttackHeuristic(row, col, board);
+	public int evaluate(int packed) {
+		int win_move = this.existWinMove(packed);
+		if (win_move != -1) {
+			return (BRANCH_WIN << 4) | win_move;
 		}
+		int defend_move = this.existMustDefend(packed, 2);
+		if (defend_move != -1) {
+			return (BRANCH_DEFEND << 4) | defend_move;
+		}
+		int selected = this.selectBasedOnHeuristics(packed);
+		if (selected == -1) {
+			return (BRANCH_NONE << 4) | NO_CELL;
+		}
+		return (BRANCH_HEURISTIC << 4) | selected;
 	}
 	
 	/**
+	 * @param evaluation result of evaluate()
+	 * @return the cell that AI will move, -1 if the board was full
+	 */
+	public static int evaluationCell(int evaluation) {
+		int cell = evaluation & 0x0F;
+		return cell == NO_CELL ? -1 : cell;
+	}
+	
+	/**
+	 * @param evaluation result of evaluate()
+	 * @return BRANCH_WIN, BRANCH_DEFEND, BRANCH_HEURISTIC or BRANCH_NONE
+	 */
+	public static int evaluationBranch(int evaluation) {
+		return (evaluation >>> 4) & 0x03;
+	}
+	
+	/**
+	 * @param branch branch that decided
+	 * @param cell the cell that AI will move, -1 for none
+	 * @return the decision packed like evaluate()
+	 */
+	public static int decision(int branch, int cell) {
+		return (branch << 4) | (cell & NO_CELL);
+	}
+	
+	/**
+	 * This selects the strategy used by getAIPosition()
 	 * 
-	 * This is the comparator that will be later used for a priority queue
-	 * for determining the best moves based on heuristics. It will pick the position
-	 * with lowest risk, if 2 positions have the same risk, it will use their 
-	 * offensive heuristics to break the tie.
-	 *
+	 * @param strategy the strategy to use, null for the heuristics of this class
 	 */
-	private class gameModelComparator implements Comparator<gameModel> {
-		@Override
-		public int compare(gameModel o1, gameModel o2) {
-			// TODO Auto-generated method stub
-			if (o1.risk == o2.risk) {
-				return o2.attackHeu - o1.attackHeu;
-			}
-			return o1.risk - o2.risk;
+	public void setStrategy(TicTacToeStrategy strategy) {
+		this.strategy = strategy;
+	}
+	
+	/**
+	 * This sets the weights of the heuristics, see TicTacToeWeights
+	 * 
+	 * @param weights weights to use, null for TicTacToeWeights.DEFAULT
+	 */
+	public void setWeights(TicTacToeWeights weights) {
+		this.weights = weights == null ? TicTacToeWeights.DEFAULT : weights;
+	}
+	
+	/**
+	 * @return the weights of the heuristics
+	 */
+	public TicTacToeWeights getWeights() {
+		return this.weights;
+	}
+	
+	/**
+	 * This turns recording of decision metrics on or off. While no
+	 * metrics are set nothing is recorded.
+	 * 
+	 * @param metrics metrics to record into, null to stop recording
+	 */
+	public void setMetrics(TicTacToeMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return the metrics being recorded, null if recording is off
+	 */
+	public TicTacToeMetrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * @return the selected strategy, null if the heuristics of this class are used
+	 */
+	public TicTacToeStrategy getStrategy() {
+		return this.strategy;
+	}
+	
+	/**
+	 * This converts a cell index of the packed board into a
+	 * {row, column} position, or {-1,-1} if there is no cell
+	 * 
+	 * @param cell cell index, or -1
+	 * @return the position of the cell
+	 */
+	public static int[] toPosition(int cell) {
+		if (cell == -1) {
+			return new int[] {-1,-1};
 		}
+		return new int[] {TicTacToeBitboard.row(cell), TicTacToeBitboard.column(cell)};
 	}
 	
 	/**
@@ -88,16 +319,24 @@ public class TicTacToeController {
 	 * @return a boolean value determining whether there's a valid win condition on this row
 	 */
 	public boolean checkHorizontal(int row, int column, int [][] board) {
-		int player = board[row][column];
+		return this.checkHorizontal(TicTacToeBitboard.cell(row, column), TicTacToeBitboard.pack(board));
+	}
+	
+	/**
+	 * Packed version of checkHorizontal(), the row is won if the
+	 * player on the cell owns every bit of the row mask.
+	 * 
+	 * @param cell cell index
+	 * @param packed packed game board
+	 * @return a boolean value determining whether there's a valid win condition on this row
+	 */
+	public boolean checkHorizontal(int cell, int packed) {
+		int player = TicTacToeBitboard.get(packed, cell);
 		if (player == 0) {
 			return false;
 		}
-		for (int i = 0; i < 3; ++i) {
-			if (board[row][i] != player) {
-				return false;
-			}
-		}
-		return true;
+		int line = TicTacToeBitboard.ROWS[TicTacToeBitboard.row(cell)];
+		return (TicTacToeBitboard.mask(packed, player) & line) == line;
 	}
 	
 	/**
@@ -111,16 +350,24 @@ public class TicTacToeController {
 	 * @return a boolean value determining whether there's a valid win condition on this column
 	 */
 	public boolean checkVertical(int row, int column, int[][] board) {
-		int player = board[row][column];
+		return this.checkVertical(TicTacToeBitboard.cell(row, column), TicTacToeBitboard.pack(board));
+	}
+	
+	/**
+	 * Packed version of checkVertical(), the column is won if the
+	 * player on the cell owns every bit of the column mask.
+	 * 
+	 * @param cell cell index
+	 * @param packed packed game board
+	 * @return a boolean value determining whether there's a valid win condition on this column
+	 */
+	public boolean checkVertical(int cell, int packed) {
+		int player = TicTacToeBitboard.get(packed, cell);
 		if (player == 0) {
 			return false;
 		}
-		for (int i = 0; i < 3; ++i) {
-			if (board[i][column] != player) {
-				return false;
-			}
-		}
-		return true;
+		int line = TicTacToeBitboard.COLUMNS[TicTacToeBitboard.column(cell)];
+		return (TicTacToeBitboard.mask(packed, player) & line) == line;
 	}
 	
 	/**
@@ -139,23 +386,33 @@ public class TicTacToeController {
 	 * @return a boolean value whether the input position can create a win condition in the diagonals
 	 */
 	public boolean checkDiagonal(int row, int column, int[][] board) {
-		if (!this.isDiagonal(row, column)) {
+		return this.checkDiagonal(TicTacToeBitboard.cell(row, column), TicTacToeBitboard.pack(board));
+	}
+	
+	/**
+	 * Packed version of checkDiagonal(). Both diagonals pass through
+	 * the center, so the center's owner is the only player that can
+	 * have a diagonal win.
+	 * 
+	 * @param cell cell index
+	 * @param packed packed game board
+	 * @return a boolean value whether the input position can create a win condition in the diagonals
+	 */
+	public boolean checkDiagonal(int cell, int packed) {
+		if (!TicTacToeBitboard.isDiagonal(cell)) {
 			return false;
 		}
-		int center = board[1][1];
-//		System.out.println("In checkDiagonal: center = " + center);
+		int center = TicTacToeBitboard.get(packed, TicTacToeBitboard.CENTER);
 		if (center == 0) {
 			return false;
 		}
+		int mask = TicTacToeBitboard.mask(packed, center);
 		// left diagonal
-		if (board[0][0] == center && board[2][2] == center) {
+		if ((mask & TicTacToeBitboard.LEFT_DIAGONAL) == TicTacToeBitboard.LEFT_DIAGONAL) {
 			return true;
 		}
 		// right diagonal
-		if (board[0][2] == center && board[2][0] == center) {
-			return true;
-		}
-		return false;
+		return (mask & TicTacToeBitboard.RIGHT_DIAGONAL) == TicTacToeBitboard.RIGHT_DIAGONAL;
 	}
 	
 	/**
@@ -165,7 +422,7 @@ public class TicTacToeController {
 	 * @return a boolean value that shows whether the input position is part of the diagonal positions
 	 */
 	public boolean isDiagonal(int row, int col) {
-		return (row == 0 && col == 0) || (row == 0 && col == 2) || (row == 1 && col == 1) || (row == 2 && col == 0) || (row == 2 && col == 2);
+		return TicTacToeBitboard.isDiagonal(TicTacToeBitboard.cell(row, col));
 	}
 	
 	/**
@@ -178,7 +435,22 @@ public class TicTacToeController {
 	 * @return true if someone won, else, return false
 	 */
 	public boolean checkStateAfterMove(int row, int col, int[][] board) {
-		return this.checkHorizontal(row, col, board) || this.checkVertical(row, col, board) || this.checkDiagonal(row,col,board);
+		return this.checkStateAfterMove(TicTacToeBitboard.cell(row, col), TicTacToeBitboard.pack(board));
+	}
+	
+	/**
+	 * Packed version of checkStateAfterMove()
+	 * 
+	 * @param cell cell index that was just moved
+	 * @param packed packed game board
+	 * @return true if someone won, else, return false
+	 */
+	public boolean checkStateAfterMove(int cell, int packed) {
+		TicTacToeMetrics recording = this.metrics;
+		if (recording != null) {
+			recording.recordProbe();
+		}
+		return this.checkHorizontal(cell, packed) || this.checkVertical(cell, packed) || this.checkDiagonal(cell, packed);
 	}
 	
 	/**
@@ -192,23 +464,38 @@ public class TicTacToeController {
 	 * that there is no 1 step victory position
 	 */
 	public int[] existWinMove(int[][] board) {
-		int [] winPosition = new int[] {-1,-1};
-		for (int i = 0; i < 3; ++i) {
-			for (int j = 0; j < 3; ++j) {
-				if (board[i][j] == 0) {
-					board[i][j] = 2;
-					if (this.checkStateAfterMove(i, j, board)) {
-						// return position
-						board[i][j] = 0;
-						winPosition[0] = i;
-						winPosition[1] = j;
-						return winPosition;
-					}
-					board[i][j] = 0;
-				}
+		return toPosition(this.existWinMove(TicTacToeBitboard.pack(board)));
+	}
+	
+	/**
+	 * Packed version of existWinMove(). The empty cells are visited
+	 * from the lowest bit, which is the same order as the row by row scan.
+	 * 
+	 * @param packed packed game board
+	 * @return the cell where a direct victory is possible, -1 if there is none
+	 */
+	public int existWinMove(int packed) {
+		return this.findWinCell(packed, 2);
+	}
+	
+	/**
+	 * This findWinCell() will return the first empty cell where
+	 * the player wins right after moving there
+	 * 
+	 * @param packed packed game board
+	 * @param player player that moves
+	 * @return the winning cell, -1 if there is none
+	 */
+	private int findWinCell(int packed, int player) {
+		int empty = TicTacToeBitboard.emptyCells(packed);
+		while (empty != 0) {
+			int cell = Integer.numberOfTrailingZeros(empty);
+			empty &= empty - 1;
+			if (this.checkStateAfterMove(cell, TicTacToeBitboard.place(packed, cell, player))) {
+				return cell;
 			}
 		}
-		return winPosition;
+		return -1;
 	}
 	
 	/**
@@ -221,23 +508,18 @@ public class TicTacToeController {
 	 * that there is no one step loss.
 	 */
 	public int[] existMustDefend(int [][] board, int player) {
-		int [] defendPosition = new int[] {-1,-1};
-		int defend = (player == 1 ? 2 : 1);
-		for (int i = 0; i < 3; ++i) {
-			for (int j = 0; j < 3; ++j) {
-				if (board[i][j] == 0) {
-					board[i][j] = defend;
-					if (this.checkStateAfterMove(i, j, board)) {
-						board[i][j] = 0;
-						defendPosition[0] = i;
-						defendPosition[1] = j;
-						return defendPosition;
-					}
-					board[i][j] = 0;
-				}
-			}
-		}
-		return defendPosition;
+		return toPosition(this.existMustDefend(TicTacToeBitboard.pack(board), player));
+	}
+	
+	/**
+	 * Packed version of existMustDefend()
+	 * 
+	 * @param packed packed game board
+	 * @param player whose step is it now?
+	 * @return the cell where the player must defend now, -1 if there is none
+	 */
+	public int existMustDefend(int packed, int player) {
+		return this.findWinCell(packed, player == 1 ? 2 : 1);
 	}
 	
 	/**
@@ -251,12 +533,18 @@ public class TicTacToeController {
 	 * @return the integer score of heuristic of row
 	 */
 	public int horizontalHeuristic(int row, int [][] board) {
-		for (int i = 0; i < 3; ++i) {
-			if (board[row][i] == 1) {
-				return 0;
-			}
-		}
-		return 1;
+		return this.horizontalHeuristic(row, TicTacToeBitboard.pack(board));
+	}
+	
+	/**
+	 * Packed version of horizontalHeuristic()
+	 * 
+	 * @param row input row that we want to check for our heuristic
+	 * @param packed packed game board
+	 * @return the integer score of heuristic of row
+	 */
+	public int horizontalHeuristic(int row, int packed) {
+		return (packed & TicTacToeBitboard.ROWS[row]) == 0 ? 1 : 0;
 	}
 	
 	/**
@@ -270,12 +558,18 @@ public class TicTacToeController {
 	 * @return the integer score of heuristic of column 
 	 */
 	public int verticalHeuristic(int col, int [][] board) {
-		for (int i = 0; i < 3; ++i) {
-			if (board[i][col] == 1) {
-				return 0;
-			}
-		}
-		return 1;
+		return this.verticalHeuristic(col, TicTacToeBitboard.pack(board));
+	}
+	
+	/**
+	 * Packed version of verticalHeuristic()
+	 * 
+	 * @param col input column that we want to check for our heuristic
+	 * @param packed packed game board
+	 * @return the integer score of heuristic of column 
+	 */
+	public int verticalHeuristic(int col, int packed) {
+		return (packed & TicTacToeBitboard.COLUMNS[col]) == 0 ? 1 : 0;
 	}
 	
 	/**
@@ -291,22 +585,23 @@ public class TicTacToeController {
 	 * @return a heuristic value for diagonals at the input position
 	 */
 	public int diagonalHeuristic(int row, int col, int [][] board) {
-		if (!this.isDiagonal(row, col)) {
-			return 0;
-		}
-		
-		int center = board[1][1];
-		if (center == 1) {
-			return 0;
-		}
-		int left_dia = (board[0][0] != 1 && board[2][2] != 1) ? 1 : 0; 
-		int right_dia = (board[0][2] != 1 && board[2][0] != 1) ? 1 : 0; 
-		if ((row == 0 && col == 0) || (row == 2 && col == 2)) {
-			return left_dia;
-		} else if ((row == 0 && col == 2) || (row == 2 && col == 0)) {
-			return right_dia; 
-		}
-		// center
+		return this.diagonalHeuristic(TicTacToeBitboard.cell(row, col), TicTacToeBitboard.pack(board));
+	}
+	
+	/**
+	 * Packed version of diagonalHeuristic(). The user's mask is tested
+	 * against each diagonal that the cell belongs to.
+	 * 
+	 * @param cell cell index
+	 * @param packed packed game board
+	 * @return a heuristic value for diagonals at the input position
+	 */
+	public int diagonalHeuristic(int cell, int packed) {
+		int bit = 1 << cell;
+		int left_dia = ((TicTacToeBitboard.LEFT_DIAGONAL & bit) != 0
+				&& (packed & TicTacToeBitboard.LEFT_DIAGONAL) == 0) ? 1 : 0;
+		int right_dia = ((TicTacToeBitboard.RIGHT_DIAGONAL & bit) != 0
+				&& (packed & TicTacToeBitboard.RIGHT_DIAGONAL) == 0) ? 1 : 0;
 		return left_dia + right_dia;
 	}
 
@@ -319,17 +614,24 @@ public class TicTacToeController {
 	 * @return the number of possible win moves at that moment
 	 */
 	public int countWinMove(int[][] board, int player) {
+		return this.countWinMove(TicTacToeBitboard.pack(board), player);
+	}
+	
+	/**
+	 * Packed version of countWinMove()
+	 * 
+	 * @param packed packed game board
+	 * @param player player making the move at that moment
+	 * @return the number of possible win moves at that moment
+	 */
+	public int countWinMove(int packed, int player) {
 		int possibleWinMove = 0;
-		for (int i = 0; i < 3; ++i) {
-			for (int j = 0; j < 3; ++j) {
-				if (board[i][j] == 0) {
-					board[i][j] = player;
-					if (this.checkStateAfterMove(i, j, board)) {
-						board[i][j] = 0;
-						++possibleWinMove;
-					}
-					board[i][j] = 0;
-				}
+		int empty = TicTacToeBitboard.emptyCells(packed);
+		while (empty != 0) {
+			int cell = Integer.numberOfTrailingZeros(empty);
+			empty &= empty - 1;
+			if (this.checkStateAfterMove(cell, TicTacToeBitboard.place(packed, cell, player))) {
+				++possibleWinMove;
 			}
 		}
 		return possibleWinMove;
@@ -343,24 +645,37 @@ public class TicTacToeController {
 	 * is, calculate the number of possible winMoves that user can create
 	 * if he moves in that position. By doing this, we can prevent any edge
 	 * case that will generate more than 1 possible win for the user to prevent
-	 * any potential losses.
+	 * any potential losses. The values are those of the weights set with
+	 * setWeights(), the numbers above are the defaults.
 	 * 
 	 * @param board game board
 	 * @return the risk that AI will be facing. The lower the better
 	 */
 	public int userWillDefend(int [][] board) {
-		int [] willDefPos = this.existMustDefend(board, 1);
-		if (willDefPos[0] == -1 || willDefPos[1] == -1) {
+		return this.userWillDefend(TicTacToeBitboard.pack(board));
+	}
+	
+	/**
+	 * Packed version of userWillDefend()
+	 * 
+	 * @param packed packed game board
+	 * @return the risk that AI will be facing. The lower the better
+	 */
+	public int userWillDefend(int packed) {
+		return this.userWillDefend(packed, this.weights);
+	}
+	
+	private int userWillDefend(int packed, TicTacToeWeights weights) {
+		int willDefPos = this.existMustDefend(packed, 1);
+		if (willDefPos == -1) {
 			// higher risk
-			return 10;
+			return weights.getNoThreatRisk();
 		}
-		board[willDefPos[0]][willDefPos[1]] = 1;
-		int possibleWin = this.countWinMove(board, 1);
-		board[willDefPos[0]][willDefPos[1]] = 0;
+		int possibleWin = this.countWinMove(TicTacToeBitboard.place(packed, willDefPos, 1), 1);
 		if (possibleWin > 1) {
-			return possibleWin;
+			return weights.getForkRisk() * possibleWin;
 		}
-		return 0;
+		return weights.getThreatRisk();
 	}
 	
 	/**
@@ -374,41 +689,64 @@ public class TicTacToeController {
 	 * @return the sum of heuristics value generate for a position
 	 */
 	public int calculateAttackHeuristic(int row, int col, int[][] board) {
-		return this.horizontalHeuristic(row, board) + this.verticalHeuristic(col, board) 
-		+ this.diagonalHeuristic(row, col, board);
+		return this.calculateAttackHeuristic(TicTacToeBitboard.cell(row, col), TicTacToeBitboard.pack(board));
+	}
+	
+	/**
+	 * Packed version of calculateAttackHeuristic()
+	 * 
+	 * @param cell cell index
+	 * @param packed packed game board
+	 * @return the sum of heuristics value generate for a position
+	 */
+	public int calculateAttackHeuristic(int cell, int packed) {
+		return this.horizontalHeuristic(TicTacToeBitboard.row(cell), packed)
+				+ this.verticalHeuristic(TicTacToeBitboard.column(cell), packed)
+				+ this.diagonalHeuristic(cell, packed);
 	}
 	
 	/**
 	 * This selectBasedOnHeuristics method will generate a move that has the
-	 * lowest risk based on a priority queue that prioritize low risk value. If
-	 * 2 have the same risk, it will search for the position that can provide
-	 * higher offensive heuristic. 
+	 * lowest risk. If 2 have the same risk, it will search for the position
+	 * that can provide higher offensive heuristic. If they are still the same,
+	 * the first position in row by row order is picked. With weights other
+	 * than the defaults, the move with the lowest weighted risk minus
+	 * weighted offensive heuristic is picked (see TicTacToeWeights).
 	 * 
 	 * @param board game board
 	 * @return a position that the AI will move based on the heuristics
 	 */
 	public int[] selectBasedOnHeuristics(int [][] board) {
-		int minRisk = Integer.MAX_VALUE;
-		int [] selectedPosition = new int[2];
-		
-		gameModelComparator model_compare = new gameModelComparator();
-		PriorityQueue<gameModel> pq = new PriorityQueue<gameModel>(model_compare);
-		
-		for (int i = 0; i < 3; ++i) {
-			for (int j = 0; j < 3; ++j) {
-				if (board[i][j] == 0) {
-					board[i][j] = 2;
-					gameModel pos_model = new gameModel(i, j , board);
-					pq.add(pos_model);
-					board[i][j] = 0;
-
-				}
+		return toPosition(this.selectBasedOnHeuristics(TicTacToeBitboard.pack(board)));
+	}
+	
+	/**
+	 * Packed version of selectBasedOnHeuristics(). It keeps the best
+	 * candidate in local variables while the empty cells are visited,
+	 * so no objects are allocated.
+	 * 
+	 * @param packed packed game board
+	 * @return the cell that the AI will move based on the heuristics, -1 if the board is full
+	 */
+	public int selectBasedOnHeuristics(int packed) {
+		TicTacToeWeights weights = this.weights;
+		int selectedCell = -1;
+		int minCost = Integer.MAX_VALUE;
+		int empty = TicTacToeBitboard.emptyCells(packed);
+		while (empty != 0) {
+			int cell = Integer.numberOfTrailingZeros(empty);
+			empty &= empty - 1;
+			int trial = TicTacToeBitboard.place(packed, cell, 2);
+			int cost = weights.getRiskWeight() * this.userWillDefend(trial, weights)
+					- weights.getLineWeight() * (this.horizontalHeuristic(TicTacToeBitboard.row(cell), trial)
+							+ this.verticalHeuristic(TicTacToeBitboard.column(cell), trial))
+					- weights.getDiagonalWeight() * this.diagonalHeuristic(cell, trial);
+			if (cost < minCost) {
+				selectedCell = cell;
+				minCost = cost;
 			}
 		}
-		gameModel selectedModel = pq.poll();
-		return selectedModel.position;
+		return selectedCell;
 	}
-
-	
 	
 }
@@ -0,0 +1,65 @@
+
+/**
+ * 
+ * This class is the time budget of one decision. A search asks
+ * isExpired() every so often and stops when it returns true, so the
+ * thread is freed soon after the deadline. Another thread can also
+ * stop the search early with cancel().
+ *
+ */
+public class TicTacToeDeadline {
+	
+	private final TicTacToeClock clock;
+	private final long deadline;
+	private volatile boolean cancelled = false;
+	
+	/**
+	 * @param clock clock to read the time from
+	 * @param budgetNanos time allowed from now, in nanoseconds
+	 */
+	public TicTacToeDeadline(TicTacToeClock clock, long budgetNanos) {
+		this.clock = clock;
+		this.deadline = clock.nanoTime() + budgetNanos;
+	}
+	
+	/**
+	 * This after() method makes a deadline on the system clock
+	 * 
+	 * @param budgetNanos time allowed from now, in nanoseconds
+	 * @return the deadline
+	 */
+	public static TicTacToeDeadline after(long budgetNanos) {
+		return new TicTacToeDeadline(TicTacToeClock.SYSTEM, budgetNanos);
+	}
+	
+	/**
+	 * This cancel() method makes the deadline expire now, from any thread
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+	
+	/**
+	 * @return true if cancel() was called
+	 */
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+	
+	/**
+	 * @return true if the time is up or the deadline was cancelled
+	 */
+	public boolean isExpired() {
+		return this.cancelled || this.clock.nanoTime() - this.deadline >= 0;
+	}
+	
+	/**
+	 * @return nanoseconds left, 0 if expired
+	 */
+	public long remainingNanos() {
+		if (this.cancelled) {
+			return 0;
+		}
+		return Math.max(0, this.deadline - this.clock.nanoTime());
+	}
+}
@@ -0,0 +1,278 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * This class appends finished games to a binary log file. Every game
+ * is one fixed 16 byte record, so a reader can map the file and jump
+ * to any record (see TicTacToeGameLogReader):
+ *
+ * <pre>
+ * header (16 bytes): int MAGIC "TTTL", int VERSION, int RECORD_BYTES, int 0
+ * record (16 bytes): long session id, long game
+ * game bits 0 - 35:  the cells played, 4 bits per move in order
+ * game bits 36 - 39: number of moves
+ * game bits 40 - 41: the player who moved first
+ * game bits 42 - 43: the winner, 0 for a tie
+ * game bit 44:       set if the branches are recorded
+ * game bits 45 - 54: the TicTacToeController branch of every AI move, 2 bits per move in order
+ * </pre>
+ *
+ * Records are collected in a direct buffer and written to the
+ * FileChannel when it is full, by flush() or by close(). record() is
+ * synchronized, so games from several threads can share one log.
+ *
+ */
+public class TicTacToeGameLog implements Closeable {
+
+	public static final int MAGIC = 0x5454544C;
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 16;
+	public static final int RECORD_BYTES = 16;
+
+	// records per write
+	private static final int BATCH = 4096;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH * RECORD_BYTES);
+
+	/**
+	 * This constructor opens a log for appending. A new file gets a
+	 * header; an existing file is checked, and a partial record left
+	 * at the end by a crash is cut off.
+	 *
+	 * @param path log file
+	 * @throws IOException if the file cannot be opened or is not a game log
+	 */
+	public TicTacToeGameLog(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			long size = this.channel.size();
+			if (size < HEADER_BYTES) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+				header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0);
+				header.flip();
+				this.channel.truncate(0);
+				while (header.hasRemaining()) {
+					this.channel.write(header, header.position());
+				}
+				size = HEADER_BYTES;
+			} else {
+				checkHeader(this.channel, path);
+				size -= (size - HEADER_BYTES) % RECORD_BYTES;
+				this.channel.truncate(size);
+			}
+			this.channel.position(size);
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * This checkHeader() method reads the header of a log file
+	 *
+	 * @param channel open log file
+	 * @param path name of the file, for the error message
+	 * @throws IOException if the file is not a game log of this version
+	 */
+	static void checkHeader(FileChannel channel, Path path) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0) {
+				throw new IOException("Game log header is cut off: " + path);
+			}
+		}
+		if (header.getInt(0) != MAGIC) {
+			throw new IOException("Not a game log: " + path);
+		}
+		if (header.getInt(4) != VERSION || header.getInt(8) != RECORD_BYTES) {
+			throw new IOException("Unsupported game log version " + header.getInt(4) + ": " + path);
+		}
+	}
+
+	/**
+	 * This record() method adds a finished game to the log
+	 *
+	 * @param sessionId id of the session or game
+	 * @param firstMover 1 if the user moved first, 2 if the AI did
+	 * @param state the game, its moves and its winner
+	 * @throws IOException if a full buffer could not be written
+	 */
+	public void record(long sessionId, int firstMover, TicTacToeGameState state) throws IOException {
+		this.record(sessionId, encode(moves(state), state.getMoveCount(), firstMover, state.getWinner()));
+	}
+
+	/**
+	 * record() with the branches that decided the AI moves
+	 *
+	 * @param sessionId id of the session or game
+	 * @param firstMover 1 if the user moved first, 2 if the AI did
+	 * @param state the game, its moves and its winner
+	 * @param branches branch of every AI move, see addBranch()
+	 * @throws IOException if a full buffer could not be written
+	 */
+	public void record(long sessionId, int firstMover, TicTacToeGameState state, int branches) throws IOException {
+		this.record(sessionId, encode(moves(state), state.getMoveCount(), firstMover, state.getWinner(), branches));
+	}
+
+	private static long moves(TicTacToeGameState state) {
+		long moves = 0;
+		for (int i = 0; i < state.getMoveCount(); ++i) {
+			moves |= (long) state.getMove(i) << (4 * i);
+		}
+		return moves;
+	}
+
+	/**
+	 * @param sessionId id of the session or game
+	 * @param game game encoded by encode()
+	 * @throws IOException if a full buffer could not be written
+	 */
+	public synchronized void record(long sessionId, long game) throws IOException {
+		this.buffer.putLong(sessionId).putLong(game);
+		if (!this.buffer.hasRemaining()) {
+			this.flush();
+		}
+	}
+
+	/**
+	 * This flush() method writes the buffered records to the file
+	 *
+	 * @throws IOException if the records could not be written
+	 */
+	public synchronized void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	/**
+	 * This close() method writes the buffered records and closes the file
+	 *
+	 * @throws IOException if the records could not be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			this.flush();
+		} finally {
+			this.channel.close();
+		}
+	}
+
+	/**
+	 * This encode() method packs a game into the long of a record
+	 *
+	 * @param moves the cells played, 4 bits per move, first move in the low bits
+	 * @param moveCount number of moves
+	 * @param firstMover 1 if the user moved first, 2 if the AI did
+	 * @param winner 1 or 2, 0 for a tie
+	 * @return the encoded game
+	 */
+	public static long encode(long moves, int moveCount, int firstMover, int winner) {
+		return moves | ((long) moveCount << 36) | ((long) firstMover << 40) | ((long) winner << 42);
+	}
+
+	/**
+	 * encode() with the branches that decided the AI moves
+	 *
+	 * @param moves the cells played, 4 bits per move, first move in the low bits
+	 * @param moveCount number of moves
+	 * @param firstMover 1 if the user moved first, 2 if the AI did
+	 * @param winner 1 or 2, 0 for a tie
+	 * @param branches branch of every AI move, see addBranch()
+	 * @return the encoded game
+	 */
+	public static long encode(long moves, int moveCount, int firstMover, int winner, int branches) {
+		return encode(moves, moveCount, firstMover, winner) | (1L << 44) | ((long) (branches & 0x3FF) << 45);
+	}
+
+	/**
+	 * This addBranch() method adds the branch of an AI move to the
+	 * branches of a game, 2 bits per AI move
+	 *
+	 * @param branches branches of the earlier AI moves, 0 at the start of a game
+	 * @param aiMove number of the AI move in the game, starting at 0
+	 * @param branch branch of TicTacToeController that decided the move
+	 * @return the branches with this move added
+	 */
+	public static int addBranch(int branches, int aiMove, int branch) {
+		return branches | (branch << (2 * aiMove));
+	}
+
+	/**
+	 * @param game encoded game
+	 * @return true if the branches of the AI moves are recorded
+	 */
+	public static boolean hasBranches(long game) {
+		return (game & (1L << 44)) != 0;
+	}
+
+	/**
+	 * @param game encoded game
+	 * @param aiMove number of the AI move in the game, starting at 0
+	 * @return the branch of TicTacToeController that decided that move,
+	 * only meaningful if hasBranches()
+	 */
+	public static int branch(long game, int aiMove) {
+		return (int) (game >>> (45 + 2 * aiMove)) & 0x03;
+	}
+
+	/**
+	 * @param game encoded game
+	 * @return number of moves
+	 */
+	public static int moveCount(long game) {
+		return (int) (game >>> 36) & 0x0F;
+	}
+
+	/**
+	 * @param game encoded game
+	 * @param index move number, starting at 0
+	 * @return the cell of that move
+	 */
+	public static int move(long game, int index) {
+		return (int) (game >>> (4 * index)) & 0x0F;
+	}
+
+	/**
+	 * @param game encoded game
+	 * @return 1 if the user moved first, 2 if the AI did
+	 */
+	public static int firstMover(long game) {
+		return (int) (game >>> 40) & 0x03;
+	}
+
+	/**
+	 * @param game encoded game
+	 * @return 1 or 2, 0 for a tie
+	 */
+	public static int winner(long game) {
+		return (int) (game >>> 42) & 0x03;
+	}
+
+	/**
+	 * This replay() method plays the moves of a game on a game state
+	 *
+	 * @param game encoded game
+	 * @param state game state, it is reset first
+	 * @return the winner of the replayed game, 0 for a tie, to compare with winner()
+	 */
+	public static int replay(long game, TicTacToeGameState state) {
+		state.reset();
+		int player = firstMover(game);
+		int count = moveCount(game);
+		for (int i = 0; i < count; ++i) {
+			state.apply(move(game, i), player);
+			player = 3 - player;
+		}
+		return state.getWinner();
+	}
+}
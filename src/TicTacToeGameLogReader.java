@@ -0,0 +1,188 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * This class reads the records of a TicTacToeGameLog through a
+ * MappedByteBuffer. It is a cursor: next() moves to the next record
+ * and the getters read the current one, so streaming a log allocates
+ * nothing per record. A reader can cover a range of records, so a
+ * large log can be read as chunks, each by its own reader and thread.
+ *
+ */
+public class TicTacToeGameLogReader {
+
+	// records per mapping, a MappedByteBuffer holds at most 2 GB
+	public static final long MAX_RECORDS = Integer.MAX_VALUE / TicTacToeGameLog.RECORD_BYTES;
+
+	private final MappedByteBuffer records;
+	private final long first;
+	private final int count;
+	private int current = -1;
+	private long sessionId;
+	private long game;
+
+	/**
+	 * This constructor maps records from (inclusive) to to (exclusive)
+	 *
+	 * @param path log file
+	 * @param from first record
+	 * @param to end of the range, at most recordCount()
+	 * @throws IOException if the file cannot be read or is not a game log
+	 */
+	public TicTacToeGameLogReader(Path path, long from, long to) throws IOException {
+		if (from < 0 || to < from || to - from > MAX_RECORDS) {
+			throw new IllegalArgumentException("Invalid record range " + from + " - " + to);
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			TicTacToeGameLog.checkHeader(channel, path);
+			if (to > recordCount(channel.size())) {
+				throw new IllegalArgumentException("Record range " + from + " - " + to + " is past the end of " + path);
+			}
+			this.records = channel.map(FileChannel.MapMode.READ_ONLY,
+					TicTacToeGameLog.HEADER_BYTES + from * TicTacToeGameLog.RECORD_BYTES,
+					(to - from) * TicTacToeGameLog.RECORD_BYTES);
+		}
+		this.first = from;
+		this.count = (int) (to - from);
+	}
+
+	/**
+	 * This constructor maps every record of the log
+	 *
+	 * @param path log file
+	 * @throws IOException if the file cannot be read, is not a game log or
+	 * has more than MAX_RECORDS records
+	 */
+	public TicTacToeGameLogReader(Path path) throws IOException {
+		this(path, 0, recordCount(path));
+	}
+
+	/**
+	 * @param path log file
+	 * @return number of complete records in the log
+	 * @throws IOException if the file cannot be read
+	 */
+	public static long recordCount(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return recordCount(channel.size());
+		}
+	}
+
+	private static long recordCount(long size) {
+		return Math.max(0, size - TicTacToeGameLog.HEADER_BYTES) / TicTacToeGameLog.RECORD_BYTES;
+	}
+
+	/**
+	 * This next() method moves to the next record
+	 *
+	 * @return false if there are no more records
+	 */
+	public boolean next() {
+		if (this.current + 1 >= this.count) {
+			return false;
+		}
+		this.seek(this.current + 1);
+		return true;
+	}
+
+	/**
+	 * This seek() method moves to a record of the range
+	 *
+	 * @param index record number within the range, starting at 0
+	 */
+	public void seek(int index) {
+		int offset = index * TicTacToeGameLog.RECORD_BYTES;
+		this.current = index;
+		this.sessionId = this.records.getLong(offset);
+		this.game = this.records.getLong(offset + 8);
+	}
+
+	/**
+	 * @return number of records in the range
+	 */
+	public int size() {
+		return this.count;
+	}
+
+	/**
+	 * @return record number of the current record in the whole log
+	 */
+	public long getRecordNumber() {
+		return this.first + this.current;
+	}
+
+	public long getSessionId() {
+		return this.sessionId;
+	}
+
+	/**
+	 * @return the current game, read it with the static methods of TicTacToeGameLog
+	 */
+	public long getGame() {
+		return this.game;
+	}
+
+	public int getMoveCount() {
+		return TicTacToeGameLog.moveCount(this.game);
+	}
+
+	/**
+	 * @param index move number, starting at 0
+	 * @return the cell of that move
+	 */
+	public int getMove(int index) {
+		return TicTacToeGameLog.move(this.game, index);
+	}
+
+	public int getFirstMover() {
+		return TicTacToeGameLog.firstMover(this.game);
+	}
+
+	/**
+	 * @return 1 or 2, 0 for a tie
+	 */
+	public int getWinner() {
+		return TicTacToeGameLog.winner(this.game);
+	}
+
+	/**
+	 * Replays every game of a log and checks that it ends with the
+	 * recorded winner, then prints how the games ended.
+	 *
+	 * @param args log file
+	 * @throws IOException if the log cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: TicTacToeGameLogReader <log file>");
+			return;
+		}
+		Path path = Paths.get(args[0]);
+		long total = recordCount(path);
+		long[] winners = new long[3];
+		long mismatches = 0;
+		TicTacToeGameState state = new TicTacToeGameState();
+		long start = System.nanoTime();
+		for (long from = 0; from < total; from += MAX_RECORDS) {
+			TicTacToeGameLogReader reader = new TicTacToeGameLogReader(path, from, Math.min(total, from + MAX_RECORDS));
+			while (reader.next()) {
+				++winners[reader.getWinner()];
+				if (TicTacToeGameLog.replay(reader.getGame(), state) != reader.getWinner()) {
+					if (mismatches++ == 0) {
+						System.out.println("First mismatch in record " + reader.getRecordNumber()
+								+ " (session " + reader.getSessionId() + ")");
+					}
+				}
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games in %.3f s (%.0f games/sec)%n", total, seconds, total / seconds);
+		System.out.println("User wins: " + winners[1] + ", AI wins: " + winners[2] + ", ties: " + winners[0]);
+		System.out.println("Replays that did not match: " + mismatches);
+	}
+}
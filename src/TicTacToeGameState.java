@@ -0,0 +1,188 @@
+import java.util.Arrays;
+
+/**
+ *
+ * This class keeps the state of a game while moves are played:
+ * the packed board, how many pieces each player has on each of
+ * the 8 winning lines, and how many cells are filled. A move only
+ * updates the lines through its cell, so checking for a win or a
+ * tie never rescans the board. undo() takes back the last move,
+ * so search code can play and take back moves on the same object.
+ *
+ */
+public class TicTacToeGameState {
+
+	// CELL_LINES[cell] lists the indexes in TicTacToeBitboard.LINES of the lines through the cell
+	private static final int[][] CELL_LINES = new int[TicTacToeBitboard.CELLS][];
+
+	static {
+		for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+			int count = 0;
+			for (int line : TicTacToeBitboard.LINES) {
+				if ((line & (1 << cell)) != 0) {
+					++count;
+				}
+			}
+			CELL_LINES[cell] = new int[count];
+			count = 0;
+			for (int i = 0; i < TicTacToeBitboard.LINES.length; ++i) {
+				if ((TicTacToeBitboard.LINES[i] & (1 << cell)) != 0) {
+					CELL_LINES[cell][count++] = i;
+				}
+			}
+		}
+	}
+
+	// lineCount[player][line], player 1 = user, 2 = AI
+	private int[][] lineCount = new int[3][TicTacToeBitboard.LINES.length];
+	private int packed = TicTacToeBitboard.EMPTY;
+	private int filled = 0;
+	private int[] history = new int[TicTacToeBitboard.CELLS];
+	private int winner = 0;
+	// number of moves that had been played when the winner completed a line
+	private int winningMoves = 0;
+
+	/**
+	 * This apply() method plays a move and updates the line counters
+	 * of the lines through the cell. The cell must be empty.
+	 *
+	 * @param row row position
+	 * @param col column position
+	 * @param player 1 for user, 2 for AI
+	 * @return true if this move won the game
+	 */
+	public boolean apply(int row, int col, int player) {
+		return this.apply(TicTacToeBitboard.cell(row, col), player);
+	}
+
+	/**
+	 * Cell index version of apply()
+	 *
+	 * @param cell cell index
+	 * @param player 1 for user, 2 for AI
+	 * @return true if this move won the game
+	 */
+	public boolean apply(int cell, int player) {
+		this.packed = TicTacToeBitboard.place(this.packed, cell, player);
+		this.history[this.filled++] = cell;
+		boolean won = false;
+		int[] counts = this.lineCount[player];
+		for (int line : CELL_LINES[cell]) {
+			if (++counts[line] == 3) {
+				won = true;
+			}
+		}
+		if (won && this.winner == 0) {
+			this.winner = player;
+			this.winningMoves = this.filled;
+		}
+		return won;
+	}
+
+	/**
+	 * This undo() method takes back the last move, including
+	 * the win it may have made
+	 */
+	public void undo() {
+		int cell = this.history[--this.filled];
+		int player = TicTacToeBitboard.get(this.packed, cell);
+		this.packed &= ~((1 << cell) | (1 << (cell + TicTacToeBitboard.SHIFT)));
+		int[] counts = this.lineCount[player];
+		for (int line : CELL_LINES[cell]) {
+			--counts[line];
+		}
+		if (this.filled < this.winningMoves) {
+			this.winner = 0;
+			this.winningMoves = 0;
+		}
+	}
+
+	/**
+	 * @return 0 if nobody has won yet, else the player who won
+	 */
+	public int getWinner() {
+		return this.winner;
+	}
+
+	/**
+	 * @return true if every position has been filled
+	 */
+	public boolean isFull() {
+		return this.filled == TicTacToeBitboard.CELLS;
+	}
+
+	/**
+	 * @return true if every position has been filled and nobody won
+	 */
+	public boolean isTie() {
+		return this.winner == 0 && this.filled == TicTacToeBitboard.CELLS;
+	}
+
+	/**
+	 * @return number of moves played
+	 */
+	public int getMoveCount() {
+		return this.filled;
+	}
+
+	/**
+	 * @param index move number, starting at 0
+	 * @return the cell of that move
+	 */
+	public int getMove(int index) {
+		return this.history[index];
+	}
+
+	/**
+	 * @return the packed board
+	 */
+	public int getPacked() {
+		return this.packed;
+	}
+
+	/**
+	 * @param row row position
+	 * @param col column position
+	 * @return 0 if the position is empty, else the player on it
+	 */
+	public int get(int row, int col) {
+		return TicTacToeBitboard.get(this.packed, TicTacToeBitboard.cell(row, col));
+	}
+
+	/**
+	 * This load() method sets up the state of a packed board. The
+	 * order of the moves is not known, so the players are recorded
+	 * taking turns, each playing its pieces in cell order. The player
+	 * with more pieces starts, the user if they have the same number,
+	 * so getMove() gives an order in which the board could have been
+	 * played.
+	 *
+	 * @param board packed board
+	 */
+	public void load(int board) {
+		this.reset();
+		int[] masks = {0, TicTacToeBitboard.mask(board, 1), TicTacToeBitboard.mask(board, 2)};
+		int player = Integer.bitCount(masks[2]) > Integer.bitCount(masks[1]) ? 2 : 1;
+		while ((masks[1] | masks[2]) != 0) {
+			if (masks[player] != 0) {
+				int cell = Integer.numberOfTrailingZeros(masks[player]);
+				masks[player] &= masks[player] - 1;
+				this.apply(cell, player);
+			}
+			player = 3 - player;
+		}
+	}
+
+	/**
+	 * This reset() method clears the board for a new game
+	 */
+	public void reset() {
+		for (int[] counts : this.lineCount) {
+			Arrays.fill(counts, 0);
+		}
+		this.packed = TicTacToeBitboard.EMPTY;
+		this.filled = 0;
+		this.winner = 0;
+		this.winningMoves = 0;
+	}
+}
@@ -0,0 +1,241 @@
+import java.util.Arrays;
+
+/**
+ *
+ * This class is a k-in-a-row game board of any size, using the line
+ * tables of a TicTacToeGeometry. Like TicTacToeGameState it counts the
+ * pieces of each player on every line, so a move only updates the
+ * lines through its cell and a win is found when one of those counts
+ * reaches k. undo() takes back the last move for search code.
+ *
+ */
+public class TicTacToeGeneralBoard {
+
+	private final TicTacToeGeometry geometry;
+	// 0 = empty, 1 = user, 2 = AI
+	private final byte[] cells;
+	// lineCount[player][line]
+	private final int[][] lineCount;
+	private final int[] history;
+	private int filled = 0;
+	private int winner = 0;
+	private int winningMoves = 0;
+
+	/**
+	 * @param geometry size of the board and the number in a row to win
+	 */
+	public TicTacToeGeneralBoard(TicTacToeGeometry geometry) {
+		this.geometry = geometry;
+		this.cells = new byte[geometry.getCells()];
+		this.lineCount = new int[3][geometry.getLineCount()];
+		this.history = new int[geometry.getCells()];
+	}
+
+	/**
+	 * This copy constructor makes an independent board in the same state
+	 *
+	 * @param other board to copy
+	 */
+	public TicTacToeGeneralBoard(TicTacToeGeneralBoard other) {
+		this.geometry = other.geometry;
+		this.cells = other.cells.clone();
+		this.lineCount = new int[][] {other.lineCount[0].clone(), other.lineCount[1].clone(), other.lineCount[2].clone()};
+		this.history = other.history.clone();
+		this.filled = other.filled;
+		this.winner = other.winner;
+		this.winningMoves = other.winningMoves;
+	}
+
+	/**
+	 * This apply() method plays a move and updates the counters of
+	 * the lines through the cell. The cell must be empty.
+	 *
+	 * @param cell cell index
+	 * @param player 1 for user, 2 for AI
+	 * @return true if this move won the game
+	 */
+	public boolean apply(int cell, int player) {
+		this.cells[cell] = (byte) player;
+		this.history[this.filled++] = cell;
+		int k = this.geometry.getK();
+		boolean won = false;
+		int[] counts = this.lineCount[player];
+		for (int line : this.geometry.getCellLines(cell)) {
+			if (++counts[line] == k) {
+				won = true;
+			}
+		}
+		if (won && this.winner == 0) {
+			this.winner = player;
+			this.winningMoves = this.filled;
+		}
+		return won;
+	}
+
+	/**
+	 * @param row row position
+	 * @param col column position
+	 * @param player 1 for user, 2 for AI
+	 * @return true if this move won the game
+	 */
+	public boolean apply(int row, int col, int player) {
+		return this.apply(this.geometry.cell(row, col), player);
+	}
+
+	/**
+	 * This undo() method takes back the last move, including the win it may have made
+	 */
+	public void undo() {
+		int cell = this.history[--this.filled];
+		int[] counts = this.lineCount[this.cells[cell]];
+		for (int line : this.geometry.getCellLines(cell)) {
+			--counts[line];
+		}
+		this.cells[cell] = 0;
+		if (this.filled < this.winningMoves) {
+			this.winner = 0;
+			this.winningMoves = 0;
+		}
+	}
+
+	/**
+	 * This findWinCell() method is the line table version of
+	 * TicTacToeController.existWinMove(): a line where the player has
+	 * k - 1 pieces and the opponent none has exactly one empty cell,
+	 * and moving there wins.
+	 *
+	 * @param player the player that moves
+	 * @return the lowest winning cell, -1 if there is none
+	 */
+	public int findWinCell(int player) {
+		int k = this.geometry.getK();
+		int[] own = this.lineCount[player];
+		int[] other = this.lineCount[3 - player];
+		int best = -1;
+		for (int line = 0; line < own.length; ++line) {
+			if (own[line] == k - 1 && other[line] == 0) {
+				for (int cell : this.geometry.getLineCells(line)) {
+					if (this.cells[cell] == 0 && (best == -1 || cell < best)) {
+						best = cell;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @param player 1 for user, 2 for AI
+	 * @param line line number
+	 * @return number of the player's pieces on the line
+	 */
+	public int getLineCount(int player, int line) {
+		return this.lineCount[player][line];
+	}
+
+	/**
+	 * @param cell cell index
+	 * @return 0 if the cell is empty, else the player on it
+	 */
+	public int get(int cell) {
+		return this.cells[cell];
+	}
+
+	/**
+	 * @param row row position
+	 * @param col column position
+	 * @return 0 if the position is empty, else the player on it
+	 */
+	public int get(int row, int col) {
+		return this.cells[this.geometry.cell(row, col)];
+	}
+
+	/**
+	 * This hasPieceNear() method tells if any piece is within a square
+	 * around the cell, search code uses it to skip far away cells
+	 *
+	 * @param cell cell index
+	 * @param distance how many rows and columns away to look
+	 * @return true if a piece is at most distance rows and columns away
+	 */
+	public boolean hasPieceNear(int cell, int distance) {
+		int row = this.geometry.row(cell);
+		int col = this.geometry.column(cell);
+		int lastRow = Math.min(this.geometry.getHeight() - 1, row + distance);
+		int lastCol = Math.min(this.geometry.getWidth() - 1, col + distance);
+		for (int r = Math.max(0, row - distance); r <= lastRow; ++r) {
+			for (int c = Math.max(0, col - distance); c <= lastCol; ++c) {
+				if (this.cells[this.geometry.cell(r, c)] != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	public TicTacToeGeometry getGeometry() {
+		return this.geometry;
+	}
+
+	/**
+	 * @return 0 if nobody has won yet, else the player who won
+	 */
+	public int getWinner() {
+		return this.winner;
+	}
+
+	/**
+	 * @return true if every cell has been filled
+	 */
+	public boolean isFull() {
+		return this.filled == this.cells.length;
+	}
+
+	/**
+	 * @return true if the game ended, by a win or a full board
+	 */
+	public boolean isOver() {
+		return this.winner != 0 || this.filled == this.cells.length;
+	}
+
+	/**
+	 * @return number of moves played
+	 */
+	public int getMoveCount() {
+		return this.filled;
+	}
+
+	/**
+	 * @param index move number, starting at 0
+	 * @return the cell of that move
+	 */
+	public int getMove(int index) {
+		return this.history[index];
+	}
+
+	/**
+	 * This reset() method clears the board for a new game
+	 */
+	public void reset() {
+		Arrays.fill(this.cells, (byte) 0);
+		Arrays.fill(this.lineCount[1], 0);
+		Arrays.fill(this.lineCount[2], 0);
+		this.filled = 0;
+		this.winner = 0;
+		this.winningMoves = 0;
+	}
+
+	/**
+	 * This toArray() method copies the board into an int[height][width]
+	 * game board, for example to print it with TicTacToeView
+	 *
+	 * @return a new game board
+	 */
+	public int[][] toArray() {
+		int[][] board = new int[this.geometry.getHeight()][this.geometry.getWidth()];
+		for (int cell = 0; cell < this.cells.length; ++cell) {
+			board[this.geometry.row(cell)][this.geometry.column(cell)] = this.cells[cell];
+		}
+		return board;
+	}
+}
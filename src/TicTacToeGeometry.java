@@ -0,0 +1,177 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * This class describes a k-in-a-row board of any width and height:
+ * every winning line (k cells in a row horizontally, vertically or
+ * on either diagonal) and, for every cell, the lines that go through
+ * it. The tables are built once per configuration and shared, so a
+ * board only has to look at the lines through the cell that was
+ * just played. Cell i is row i / width, column i % width.
+ *
+ */
+public final class TicTacToeGeometry {
+
+	private static final ConcurrentHashMap<Long, TicTacToeGeometry> CACHE = new ConcurrentHashMap<Long, TicTacToeGeometry>();
+
+	/**
+	 * the classic 3x3 board with 3 in a row
+	 */
+	public static final TicTacToeGeometry CLASSIC = of(3, 3, 3);
+
+	private final int width;
+	private final int height;
+	private final int k;
+	// lineCells[line] = the k cells of the line
+	private final int[][] lineCells;
+	// cellLines[cell] = the lines through the cell
+	private final int[][] cellLines;
+
+	private TicTacToeGeometry(int width, int height, int k) {
+		this.width = width;
+		this.height = height;
+		this.k = k;
+
+		// directions: right, down, down-right, down-left
+		int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+		int count = 0;
+		for (int[] d : directions) {
+			for (int row = 0; row < height; ++row) {
+				for (int col = 0; col < width; ++col) {
+					if (this.fits(row, col, d)) {
+						++count;
+					}
+				}
+			}
+		}
+		this.lineCells = new int[count][];
+		int[] perCell = new int[width * height];
+		int line = 0;
+		for (int[] d : directions) {
+			for (int row = 0; row < height; ++row) {
+				for (int col = 0; col < width; ++col) {
+					if (!this.fits(row, col, d)) {
+						continue;
+					}
+					int[] cells = new int[k];
+					for (int i = 0; i < k; ++i) {
+						cells[i] = (row + i * d[0]) * width + col + i * d[1];
+						++perCell[cells[i]];
+					}
+					this.lineCells[line++] = cells;
+				}
+			}
+		}
+		this.cellLines = new int[width * height][];
+		for (int cell = 0; cell < perCell.length; ++cell) {
+			this.cellLines[cell] = new int[perCell[cell]];
+			perCell[cell] = 0;
+		}
+		for (line = 0; line < count; ++line) {
+			for (int cell : this.lineCells[line]) {
+				this.cellLines[cell][perCell[cell]++] = line;
+			}
+		}
+	}
+
+	private boolean fits(int row, int col, int[] d) {
+		int lastRow = row + (this.k - 1) * d[0];
+		int lastCol = col + (this.k - 1) * d[1];
+		return lastRow < this.height && lastCol >= 0 && lastCol < this.width;
+	}
+
+	/**
+	 * This of() method returns the shared geometry of a configuration,
+	 * building its tables the first time it is asked for
+	 *
+	 * @param width number of columns
+	 * @param height number of rows
+	 * @param k number in a row needed to win
+	 * @return the geometry
+	 */
+	public static TicTacToeGeometry of(int width, int height, int k) {
+		if (width < 1 || height < 1 || k < 1 || (k > width && k > height)) {
+			throw new IllegalArgumentException("Invalid board " + width + "x" + height + " with " + k + " in a row");
+		}
+		Long key = ((long) width << 40) | ((long) height << 20) | k;
+		TicTacToeGeometry geometry = CACHE.get(key);
+		if (geometry == null) {
+			geometry = new TicTacToeGeometry(width, height, k);
+			TicTacToeGeometry existing = CACHE.putIfAbsent(key, geometry);
+			if (existing != null) {
+				geometry = existing;
+			}
+		}
+		return geometry;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * @return number in a row needed to win
+	 */
+	public int getK() {
+		return this.k;
+	}
+
+	/**
+	 * @return number of cells
+	 */
+	public int getCells() {
+		return this.width * this.height;
+	}
+
+	/**
+	 * @return number of winning lines
+	 */
+	public int getLineCount() {
+		return this.lineCells.length;
+	}
+
+	/**
+	 * @param line line number
+	 * @return the cells of the line, the array must not be changed
+	 */
+	public int[] getLineCells(int line) {
+		return this.lineCells[line];
+	}
+
+	/**
+	 * @param cell cell index
+	 * @return the lines through the cell, the array must not be changed
+	 */
+	public int[] getCellLines(int cell) {
+		return this.cellLines[cell];
+	}
+
+	/**
+	 * @param row row position
+	 * @param col column position
+	 * @return the cell index of the position
+	 */
+	public int cell(int row, int col) {
+		return row * this.width + col;
+	}
+
+	/**
+	 * @param cell cell index
+	 * @return row of the cell
+	 */
+	public int row(int cell) {
+		return cell / this.width;
+	}
+
+	/**
+	 * @param cell cell index
+	 * @return column of the cell
+	 */
+	public int column(int cell) {
+		return cell % this.width;
+	}
+}
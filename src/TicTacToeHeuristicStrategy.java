@@ -0,0 +1,39 @@
+
+/**
+ * 
+ * This strategy is the original AI logic of TicTacToeController:
+ * win if possible, defend if needed, otherwise pick by the
+ * defend/attack heuristic. It is stateless and can be shared
+ * between threads.
+ *
+ */
+public class TicTacToeHeuristicStrategy implements TicTacToeStrategy {
+	
+	private final TicTacToeController controller = new TicTacToeController();
+	
+	public TicTacToeHeuristicStrategy() {
+	}
+	
+	/**
+	 * @param weights weights of the heuristics, see TicTacToeWeights
+	 */
+	public TicTacToeHeuristicStrategy(TicTacToeWeights weights) {
+		this.controller.setWeights(weights);
+	}
+	
+	@Override
+	public int selectMove(int packed) {
+		return this.controller.getAIMove(packed);
+	}
+	
+	/**
+	 * selectMove() that also reports the branch that decided, see
+	 * TicTacToeController.evaluate()
+	 * 
+	 * @param packed packed game board, AI to move
+	 * @return the packed evaluation
+	 */
+	public int evaluate(int packed) {
+		return this.controller.evaluate(packed);
+	}
+}
@@ -0,0 +1,124 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * This class counts latencies (or any positive long values) in
+ * buckets, so percentiles can be read without keeping every value.
+ * Each power of two is split into 32 sub-buckets, so a value is
+ * reported within about 3% of what was recorded. Recording is a
+ * single atomic increment, so many threads can record at once
+ * without locks.
+ *
+ */
+public class TicTacToeHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * This record() method counts one value, negative values count as 0
+	 *
+	 * @param value value to record, for example nanoseconds
+	 */
+	public void record(long value) {
+		this.counts.incrementAndGet(bucketOf(value < 0 ? 0 : value));
+	}
+
+	/**
+	 * @return number of recorded values
+	 */
+	public long getCount() {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			total += this.counts.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * This getPercentile() method returns the value below which the given
+	 * percent of the recorded values fall, using the upper end of its bucket
+	 *
+	 * @param percent percentile between 0 and 100
+	 * @return the value at the percentile, 0 if nothing was recorded
+	 */
+	public long getPercentile(double percent) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			snapshot[i] = this.counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percent / 100.0);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return upperBoundOf(i);
+			}
+		}
+		return upperBoundOf(BUCKETS - 1);
+	}
+
+	/**
+	 * @return the largest recorded value, rounded up to its bucket
+	 */
+	public long getMax() {
+		for (int i = BUCKETS - 1; i >= 0; --i) {
+			if (this.counts.get(i) != 0) {
+				return upperBoundOf(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * This add() method adds the counts of another histogram to this one
+	 *
+	 * @param other histogram to add
+	 */
+	public void add(TicTacToeHistogram other) {
+		for (int i = 0; i < BUCKETS; ++i) {
+			long count = other.counts.get(i);
+			if (count != 0) {
+				this.counts.addAndGet(i, count);
+			}
+		}
+	}
+
+	/**
+	 * This reset() method clears all counts
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; ++i) {
+			this.counts.set(i, 0);
+		}
+	}
+
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		// keep the 6 highest bits: 32 + the 5 bits below the leading one
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	private static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+}
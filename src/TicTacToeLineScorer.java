@@ -0,0 +1,210 @@
+
+/**
+ *
+ * This class scores the lines of many boards at once, for bulk
+ * evaluation. The boards are kept as a structure of arrays: one int[]
+ * with the 9-bit user masks and one with the 9-bit AI masks, lane i of
+ * each array belonging to board i. Every method runs the 8 lines as
+ * the outer loop and the boards as a plain inner loop without
+ * branches, so the JIT can vectorize it.
+ *
+ * The results are the same as calculateAttackHeuristic() and
+ * userWillDefend() of TicTacToeController, which stay the scalar path
+ * for single boards. The methods allocate nothing, the caller passes
+ * every array. main() times the two paths.
+ *
+ */
+public final class TicTacToeLineScorer {
+
+	private static final int[] LINES = TicTacToeBitboard.LINES;
+
+	private TicTacToeLineScorer() {
+	}
+
+	/**
+	 * This split() method turns packed boards into the two mask arrays
+	 *
+	 * @param packed packed boards
+	 * @param user filled with the user masks
+	 * @param ai filled with the AI masks
+	 * @param count number of boards
+	 */
+	public static void split(int[] packed, int[] user, int[] ai, int count) {
+		for (int i = 0; i < count; ++i) {
+			user[i] = packed[i] & TicTacToeBitboard.FULL;
+			ai[i] = (packed[i] >>> TicTacToeBitboard.SHIFT) & TicTacToeBitboard.FULL;
+		}
+	}
+
+	/**
+	 * This attackHeuristic() method is calculateAttackHeuristic() for
+	 * many boards: the number of lines through the cell without a user piece
+	 *
+	 * @param user user masks
+	 * @param cells the cell scored on each board
+	 * @param out filled with the scores
+	 * @param count number of boards
+	 */
+	public static void attackHeuristic(int[] user, int[] cells, int[] out, int count) {
+		for (int i = 0; i < count; ++i) {
+			out[i] = 0;
+		}
+		for (int line : LINES) {
+			for (int i = 0; i < count; ++i) {
+				// 1 if the cell is on the line, and 1 if the line has no user piece
+				int onLine = -((1 << cells[i]) & line) >>> 31;
+				int open = ((user[i] & line) - 1) >>> 31;
+				out[i] += onLine & open;
+			}
+		}
+	}
+
+	/**
+	 * This winCells() method finds, on many boards, every empty cell
+	 * where the mover would complete a line
+	 *
+	 * @param mover masks of the player that moves
+	 * @param other masks of the other player
+	 * @param out filled with masks of the winning cells
+	 * @param count number of boards
+	 */
+	public static void winCells(int[] mover, int[] other, int[] out, int count) {
+		for (int i = 0; i < count; ++i) {
+			out[i] = 0;
+		}
+		for (int line : LINES) {
+			for (int i = 0; i < count; ++i) {
+				out[i] |= lineWinCell(line, mover[i], other[i]);
+			}
+		}
+		for (int i = 0; i < count; ++i) {
+			out[i] |= diagonalWinCells(mover[i], other[i]);
+		}
+	}
+
+	/**
+	 * This userWillDefend() method is userWillDefend() for many boards
+	 * with the AI's move already placed: noThreatRisk if the user has
+	 * nothing to defend, else forkRisk times the number of winning cells
+	 * the user has after defending if that is more than 1, else threatRisk
+	 *
+	 * @param user user masks
+	 * @param ai AI masks
+	 * @param out filled with the risks
+	 * @param scratch work array, at least count long
+	 * @param count number of boards
+	 * @param weights the risk weights, as set on the controller
+	 */
+	public static void userWillDefend(int[] user, int[] ai, int[] out, int[] scratch, int count,
+			TicTacToeWeights weights) {
+		int noThreatRisk = weights.getNoThreatRisk();
+		int threatRisk = weights.getThreatRisk();
+		int forkRisk = weights.getForkRisk();
+		// the cells where the AI would win, the lowest one is defended
+		winCells(ai, user, out, count);
+		int[] defended = scratch;
+		for (int i = 0; i < count; ++i) {
+			defended[i] = user[i] | (out[i] & -out[i]);
+		}
+		// out now collects the user's winning cells after defending
+		winCells(defended, ai, out, count);
+		for (int i = 0; i < count; ++i) {
+			int possibleWin = Integer.bitCount(out[i]);
+			int risk = possibleWin > 1 ? forkRisk * possibleWin : threatRisk;
+			// nothing was defended if the user has no new piece
+			out[i] = defended[i] == user[i] ? noThreatRisk : risk;
+		}
+	}
+
+	/**
+	 * The empty cell of the line if the mover has the other two, else 0
+	 */
+	private static int lineWinCell(int line, int mover, int other) {
+		int missing = line & ~mover;
+		// 0 if missing is a single bit (or none), else a positive number
+		int single = (missing & (missing - 1)) - 1 >> 31;
+		return missing & ~other & single;
+	}
+
+	/**
+	 * checkDiagonal() looks at the diagonals of the center's owner, not
+	 * of the player who moved. Once a diagonal is full, any move on an
+	 * empty diagonal cell counts as a win, so the same cells are added here.
+	 */
+	private static int diagonalWinCells(int a, int b) {
+		int full = isFull(a, TicTacToeBitboard.LEFT_DIAGONAL) | isFull(a, TicTacToeBitboard.RIGHT_DIAGONAL)
+				| isFull(b, TicTacToeBitboard.LEFT_DIAGONAL) | isFull(b, TicTacToeBitboard.RIGHT_DIAGONAL);
+		return TicTacToeBitboard.DIAGONAL_CELLS & ~(a | b) & full;
+	}
+
+	/**
+	 * -1 if the mask owns the whole line, else 0
+	 */
+	private static int isFull(int mask, int line) {
+		return ((mask & line) ^ line) - 1 >> 31;
+	}
+
+	/**
+	 * This boardsWithAIMove() method lists every board with an AI piece
+	 * on it, the boards the batch methods are checked and timed on
+	 *
+	 * @param packed filled with the packed boards, 2^18 long
+	 * @param cells filled with the cell of one AI piece of each board
+	 * @return number of boards
+	 */
+	static int boardsWithAIMove(int[] packed, int[] cells) {
+		int count = 0;
+		for (int board = 0; board < (1 << 18); ++board) {
+			int user = board & TicTacToeBitboard.FULL;
+			int ai = board >>> TicTacToeBitboard.SHIFT;
+			if ((user & ai) == 0 && ai != 0) {
+				packed[count] = board;
+				cells[count++] = Integer.numberOfTrailingZeros(ai);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Times the batch scores against the controller on every board with
+	 * the AI's move placed. TicTacToeLineScorerTest checks that they agree.
+	 *
+	 * @param args number of timing rounds (default 20)
+	 */
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		TicTacToeController controller = new TicTacToeController();
+
+		int[] packed = new int[1 << 18];
+		int[] cells = new int[1 << 18];
+		int count = boardsWithAIMove(packed, cells);
+		int[] user = new int[count];
+		int[] ai = new int[count];
+		int[] attack = new int[count];
+		int[] risk = new int[count];
+		int[] scratch = new int[count];
+		split(packed, user, ai, count);
+
+		long sink = 0;
+		long batchNanos = Long.MAX_VALUE;
+		long scalarNanos = Long.MAX_VALUE;
+		for (int round = 0; round < rounds; ++round) {
+			long start = System.nanoTime();
+			attackHeuristic(user, cells, attack, count);
+			userWillDefend(user, ai, risk, scratch, count, TicTacToeWeights.DEFAULT);
+			batchNanos = Math.min(batchNanos, System.nanoTime() - start);
+			sink += attack[round] + risk[round];
+
+			start = System.nanoTime();
+			for (int i = 0; i < count; ++i) {
+				sink += controller.calculateAttackHeuristic(cells[i], packed[i]) + controller.userWillDefend(packed[i]);
+			}
+			scalarNanos = Math.min(scalarNanos, System.nanoTime() - start);
+		}
+		System.out.printf("batch:  %.1f ns/board%n", (double) batchNanos / count);
+		System.out.printf("scalar: %.1f ns/board%n", (double) scalarNanos / count);
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+}
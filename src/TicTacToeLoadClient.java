@@ -0,0 +1,215 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * This class puts load on a TicTacToeServer. It keeps many sessions
+ * open at once, split between a few threads. In every round a thread
+ * sends one command on each of its sessions and then reads all the
+ * replies, so every session has a request in flight at the same time.
+ * The user plays random legal moves. At the end it prints games/sec,
+ * moves/sec and the p50/p99 round trip latency of a move.
+ *
+ * If no host is given, a server is started in the same process first.
+ *
+ */
+public class TicTacToeLoadClient {
+
+	private final String host;
+	private final int port;
+	private final TicTacToeHistogram latency = new TicTacToeHistogram();
+	private final AtomicLong games = new AtomicLong();
+	private final AtomicLong moves = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+
+	public TicTacToeLoadClient(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * @return the round trip latency of MOVE commands, in nanoseconds
+	 */
+	public TicTacToeHistogram getLatency() {
+		return this.latency;
+	}
+
+	public long getGames() {
+		return this.games.get();
+	}
+
+	public long getMoves() {
+		return this.moves.get();
+	}
+
+	public long getErrors() {
+		return this.errors.get();
+	}
+
+	/**
+	 * This run() method opens the sessions, plays the games and
+	 * waits until every thread is done
+	 *
+	 * @param sessions number of sessions open at the same time
+	 * @param gamesPerSession games played on each session
+	 * @param threads number of client threads
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void run(int sessions, final int gamesPerSession, int threads) throws InterruptedException {
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; ++t) {
+			final int count = sessions / threads + (t < sessions % threads ? 1 : 0);
+			workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						playSessions(count, gamesPerSession);
+					} catch (IOException e) {
+						errors.incrementAndGet();
+						System.out.println("Error: " + e.getMessage());
+					}
+				}
+			}, "load-client-" + t);
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+	}
+
+	private void playSessions(int count, int gamesPerSession) throws IOException {
+		Socket[] sockets = new Socket[count];
+		BufferedReader[] readers = new BufferedReader[count];
+		OutputStream[] writers = new OutputStream[count];
+		String[] boards = new String[count];
+		int[] played = new int[count];
+		long[] sent = new long[count];
+		boolean[] moving = new boolean[count];
+		try {
+			for (int i = 0; i < count; ++i) {
+				sockets[i] = new Socket(this.host, this.port);
+				sockets[i].setTcpNoDelay(true);
+				readers[i] = new BufferedReader(new InputStreamReader(sockets[i].getInputStream(), StandardCharsets.US_ASCII));
+				writers[i] = sockets[i].getOutputStream();
+			}
+			int active = count;
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			while (active > 0) {
+				for (int i = 0; i < count; ++i) {
+					if (played[i] >= gamesPerSession) {
+						continue;
+					}
+					String command;
+					if (boards[i] == null) {
+						command = random.nextBoolean() ? "NEW u\n" : "NEW p\n";
+						moving[i] = false;
+					} else {
+						int cell = randomEmptyCell(boards[i], random);
+						command = "MOVE " + TicTacToeBitboard.row(cell) + " " + TicTacToeBitboard.column(cell) + "\n";
+						moving[i] = true;
+					}
+					sent[i] = System.nanoTime();
+					writers[i].write(command.getBytes(StandardCharsets.US_ASCII));
+				}
+				for (int i = 0; i < count; ++i) {
+					if (played[i] >= gamesPerSession) {
+						continue;
+					}
+					String reply = readers[i].readLine();
+					if (reply == null) {
+						throw new IOException("Server closed the connection");
+					}
+					if (moving[i]) {
+						this.latency.record(System.nanoTime() - sent[i]);
+						this.moves.incrementAndGet();
+					}
+					String[] words = reply.split(" ");
+					if (words[0].equals("ERROR")) {
+						this.errors.incrementAndGet();
+						boards[i] = null;
+					} else if (words[0].equals("PLAYING")) {
+						boards[i] = words[1];
+					} else {
+						boards[i] = null;
+						this.games.incrementAndGet();
+						if (++played[i] >= gamesPerSession) {
+							--active;
+						}
+					}
+				}
+			}
+		} finally {
+			for (Socket socket : sockets) {
+				if (socket != null) {
+					socket.close();
+				}
+			}
+		}
+	}
+
+	private static int randomEmptyCell(String board, ThreadLocalRandom random) {
+		int empty = 0;
+		for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+			if (board.charAt(cell) == '.') {
+				++empty;
+			}
+		}
+		int skip = random.nextInt(empty);
+		for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+			if (board.charAt(cell) == '.' && skip-- == 0) {
+				return cell;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Runs the load test and prints a report.
+	 *
+	 * @param args sessions (default 1000), games per session (default 100),
+	 * threads (default 4), host and port (default: start a server in this process)
+	 * @throws Exception if the server cannot be reached
+	 */
+	public static void main(String[] args) throws Exception {
+		int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int gamesPerSession = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		TicTacToeServer server = null;
+		String host;
+		int port;
+		if (args.length > 4) {
+			host = args[3];
+			port = Integer.parseInt(args[4]);
+		} else {
+			server = new TicTacToeServer(0, 60000);
+			new Thread(server, "server").start();
+			host = "127.0.0.1";
+			port = server.getPort();
+		}
+
+		TicTacToeLoadClient client = new TicTacToeLoadClient(host, port);
+		long start = System.nanoTime();
+		client.run(sessions, gamesPerSession, threads);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(sessions + " sessions on " + threads + " threads");
+		System.out.printf("%d games, %.0f games/sec, %.0f moves/sec, %d errors%n",
+				client.getGames(), client.getGames() / seconds, client.getMoves() / seconds, client.getErrors());
+		TicTacToeHistogram latency = client.getLatency();
+		System.out.printf("Move round trip: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+				latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3, latency.getMax() / 1e3);
+		if (server != null) {
+			TicTacToeHistogram handling = server.getMoveLatency();
+			System.out.printf("Server move handling: p50 %.1f us, p99 %.1f us%n",
+					handling.getPercentile(50) / 1e3, handling.getPercentile(99) / 1e3);
+			server.stop();
+		}
+	}
+}
@@ -0,0 +1,390 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *
+ * This class aggregates a TicTacToeGameLog without loading it: the
+ * record range is split into chunks, every chunk is streamed through
+ * its own TicTacToeGameLogReader on a ForkJoinPool into a Stats of
+ * plain long arrays, and the Stats are merged. The memory used does not
+ * depend on the size of the log, and since Stats can be merged, a log
+ * that grows can be analyzed incrementally by reading only the new
+ * records and adding them to the earlier Stats.
+ *
+ * For every position where the AI was to move, the decision is counted
+ * by the branch of TicTacToeController that made it, as recorded in the
+ * game log: win now, defend (existMustDefend()),
+ * selectBasedOnHeuristics() or BRANCH_NONE for a strategy. Games logged
+ * without their branches count as BRANCH_UNKNOWN.
+ *
+ */
+public class TicTacToeLogAnalytics {
+
+	// the decision was not recorded with the game
+	public static final int BRANCH_UNKNOWN = 4;
+	private static final int BRANCHES = 5;
+	private static final String[] BRANCH_NAMES = {"strategy", "win", "defend", "heuristics", "not recorded"};
+
+	// records per chunk, each chunk is read by one task
+	private static final long CHUNK = 1 << 20;
+
+	/**
+	 * This analyze() method aggregates a range of records of a log
+	 *
+	 * @param path log file
+	 * @param from first record
+	 * @param to end of the range (exclusive)
+	 * @param pool pool that reads the chunks
+	 * @return the statistics of the range
+	 * @throws IOException if the log cannot be read
+	 */
+	public Stats analyze(Path path, long from, long to, ForkJoinPool pool) throws IOException {
+		try {
+			return pool.invoke(new ChunkTask(path, from, to));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * This analyze() method aggregates a whole log
+	 *
+	 * @param path log file
+	 * @param pool pool that reads the chunks
+	 * @return the statistics of the log
+	 * @throws IOException if the log cannot be read
+	 */
+	public Stats analyze(Path path, ForkJoinPool pool) throws IOException {
+		return this.analyze(path, 0, TicTacToeGameLogReader.recordCount(path), pool);
+	}
+
+	/**
+	 * Streams one chunk into a new Stats
+	 */
+	private Stats analyzeChunk(Path path, long from, long to) throws IOException {
+		Stats stats = new Stats();
+		TicTacToeGameLogReader reader = new TicTacToeGameLogReader(path, from, to);
+		// base 3 indexes of the AI's positions in the current game
+		int[] aiPositions = new int[TicTacToeBitboard.CELLS];
+		while (reader.next()) {
+			long game = reader.getGame();
+			int first = TicTacToeGameLog.firstMover(game);
+			int winner = TicTacToeGameLog.winner(game);
+			int count = TicTacToeGameLog.moveCount(game);
+			++stats.games;
+			++stats.results[winner];
+			if (count >= 2) {
+				int opening = ((first - 1) * TicTacToeBitboard.CELLS + TicTacToeGameLog.move(game, 0)) * TicTacToeBitboard.CELLS
+						+ TicTacToeGameLog.move(game, 1);
+				++stats.openings[opening * 3 + winner];
+			}
+
+			boolean recorded = TicTacToeGameLog.hasBranches(game);
+			int packed = TicTacToeBitboard.EMPTY;
+			int player = first;
+			int aiMoves = 0;
+			for (int i = 0; i < count; ++i) {
+				int cell = TicTacToeGameLog.move(game, i);
+				if (player == 2) {
+					int index = TicTacToeBitboard.index(packed);
+					int branch = recorded ? TicTacToeGameLog.branch(game, aiMoves) : BRANCH_UNKNOWN;
+					aiPositions[aiMoves++] = index;
+					++stats.positionVisits[index];
+					++stats.branchTotals[branch];
+					++stats.positionBranches[index * BRANCHES + branch];
+				}
+				packed = TicTacToeBitboard.place(packed, cell, player);
+				player = 3 - player;
+			}
+			if (winner == 1) {
+				for (int i = 0; i < aiMoves; ++i) {
+					++stats.positionLosses[aiPositions[i]];
+				}
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 *
+	 * Counters of a range of games. All counters are primitive arrays
+	 * indexed by small keys: the winner (0 for a tie), the opening, the
+	 * base 3 index of a position and the branch.
+	 *
+	 */
+	public static class Stats {
+		private long games;
+		private final long[] results = new long[3];
+		// [first mover - 1][first move][second move][winner]
+		private final long[] openings = new long[2 * TicTacToeBitboard.CELLS * TicTacToeBitboard.CELLS * 3];
+		private final long[] branchTotals = new long[BRANCHES];
+		// [position][branch]
+		private final long[] positionBranches = new long[TicTacToeBitboard.POSITIONS * BRANCHES];
+		private final long[] positionVisits = new long[TicTacToeBitboard.POSITIONS];
+		private final long[] positionLosses = new long[TicTacToeBitboard.POSITIONS];
+
+		/**
+		 * This add() method merges the counters of other into these
+		 *
+		 * @param other statistics of other games
+		 * @return this
+		 */
+		public Stats add(Stats other) {
+			this.games += other.games;
+			addAll(this.results, other.results);
+			addAll(this.openings, other.openings);
+			addAll(this.branchTotals, other.branchTotals);
+			addAll(this.positionBranches, other.positionBranches);
+			addAll(this.positionVisits, other.positionVisits);
+			addAll(this.positionLosses, other.positionLosses);
+			return this;
+		}
+
+		private static void addAll(long[] to, long[] from) {
+			for (int i = 0; i < to.length; ++i) {
+				to[i] += from[i];
+			}
+		}
+
+		public long getGames() {
+			return this.games;
+		}
+
+		/**
+		 * @param winner 1 for the user, 2 for the AI, 0 for ties
+		 * @return number of games that ended that way
+		 */
+		public long getResults(int winner) {
+			return this.results[winner];
+		}
+
+		/**
+		 * @param firstMover 1 if the user moved first, 2 if the AI did
+		 * @param firstMove cell of the first move
+		 * @param secondMove cell of the second move
+		 * @param winner 1 for the user, 2 for the AI, 0 for ties
+		 * @return number of games with this opening that ended that way
+		 */
+		public long getOpeningResults(int firstMover, int firstMove, int secondMove, int winner) {
+			int opening = ((firstMover - 1) * TicTacToeBitboard.CELLS + firstMove) * TicTacToeBitboard.CELLS + secondMove;
+			return this.openings[opening * 3 + winner];
+		}
+
+		/**
+		 * @param branch BRANCH_WIN, BRANCH_DEFEND, BRANCH_HEURISTIC or
+		 * BRANCH_NONE of TicTacToeController, or BRANCH_UNKNOWN
+		 * @return number of AI decisions taken by that branch
+		 */
+		public long getBranchCount(int branch) {
+			return this.branchTotals[branch];
+		}
+
+		/**
+		 * @param packed packed board, AI to move
+		 * @param branch branch of TicTacToeController, or BRANCH_UNKNOWN
+		 * @return how often the AI decided this board by that branch
+		 */
+		public long getPositionBranchCount(int packed, int branch) {
+			return this.positionBranches[TicTacToeBitboard.index(packed) * BRANCHES + branch];
+		}
+
+		/**
+		 * @param packed packed board, AI to move
+		 * @return the branch that decided this board most often
+		 */
+		public int getPositionBranch(int packed) {
+			int index = TicTacToeBitboard.index(packed) * BRANCHES;
+			int branch = 0;
+			for (int i = 1; i < BRANCHES; ++i) {
+				if (this.positionBranches[index + i] > this.positionBranches[index + branch]) {
+					branch = i;
+				}
+			}
+			return branch;
+		}
+
+		/**
+		 * @param packed packed board, AI to move
+		 * @return how often the AI had to move on this board
+		 */
+		public long getPositionVisits(int packed) {
+			return this.positionVisits[TicTacToeBitboard.index(packed)];
+		}
+
+		/**
+		 * @param packed packed board, AI to move
+		 * @return how many games the AI lost after moving on this board
+		 */
+		public long getPositionLosses(int packed) {
+			return this.positionLosses[TicTacToeBitboard.index(packed)];
+		}
+
+		/**
+		 * This topLossPositions() method finds the AI positions that
+		 * were part of the most lost games
+		 *
+		 * @param limit number of positions wanted
+		 * @return packed boards, most losses first, only boards with
+		 * losses, empty if limit is 0 or less
+		 */
+		public int[] topLossPositions(int limit) {
+			if (limit <= 0) {
+				return new int[0];
+			}
+			int[] top = new int[limit];
+			int size = 0;
+			for (int index = 0; index < TicTacToeBitboard.POSITIONS; ++index) {
+				long losses = this.positionLosses[index];
+				if (losses == 0 || (size == limit && losses <= this.positionLosses[top[size - 1]])) {
+					continue;
+				}
+				// insertion into the sorted list, it is short
+				int i = size < limit ? size++ : size - 1;
+				while (i > 0 && this.positionLosses[top[i - 1]] < losses) {
+					top[i] = top[i - 1];
+					--i;
+				}
+				top[i] = index;
+			}
+			int[] boards = new int[size];
+			for (int i = 0; i < size; ++i) {
+				boards[i] = TicTacToeBitboard.fromIndex(top[i]);
+			}
+			return boards;
+		}
+	}
+
+	/**
+	 *
+	 * Analyzes the records from (inclusive) to to (exclusive), splitting
+	 * the range in half while it is larger than CHUNK.
+	 *
+	 */
+	private class ChunkTask extends RecursiveTask<Stats> {
+		private static final long serialVersionUID = 1L;
+		private final Path path;
+		private final long from;
+		private final long to;
+
+		ChunkTask(Path path, long from, long to) {
+			this.path = path;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Stats compute() {
+			if (this.to - this.from <= CHUNK) {
+				try {
+					return analyzeChunk(this.path, this.from, this.to);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			long middle = (this.from + this.to) >>> 1;
+			ChunkTask left = new ChunkTask(this.path, this.from, middle);
+			left.fork();
+			Stats right = new ChunkTask(this.path, middle, this.to).compute();
+			return left.join().add(right);
+		}
+	}
+
+	/**
+	 * @param packed packed board
+	 * @return the board on one line, rows split by '/', for example "X.O/.X./..O"
+	 */
+	static String describe(int packed) {
+		StringBuilder text = new StringBuilder(11);
+		for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+			if (cell > 0 && cell % 3 == 0) {
+				text.append('/');
+			}
+			int player = TicTacToeBitboard.get(packed, cell);
+			text.append(player == 1 ? 'X' : player == 2 ? 'O' : '.');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Analyzes a game log and prints the report.
+	 *
+	 * @param args log file, number of positions and openings to list
+	 * (default 10), number of threads (default all cores)
+	 * @throws IOException if the log cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: TicTacToeLogAnalytics <log file> [top] [threads]");
+			return;
+		}
+		Path path = Paths.get(args[0]);
+		int top = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		TicTacToeLogAnalytics analytics = new TicTacToeLogAnalytics();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		Stats stats = analytics.analyze(path, pool);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		pool.shutdown();
+
+		long games = Math.max(1, stats.getGames());
+		System.out.printf("%d games in %.3f s on %d threads (%.0f games/sec)%n",
+				stats.getGames(), seconds, threads, stats.getGames() / seconds);
+		System.out.printf("AI wins %.2f%%, ties %.2f%%, AI losses %.2f%%%n", 100.0 * stats.getResults(2) / games,
+				100.0 * stats.getResults(0) / games, 100.0 * stats.getResults(1) / games);
+
+		long decisions = 0;
+		for (int branch = 0; branch < BRANCHES; ++branch) {
+			decisions += stats.getBranchCount(branch);
+		}
+		decisions = Math.max(1, decisions);
+		System.out.printf("AI decisions: win %.2f%%, defend %.2f%%, heuristics %.2f%%, strategy %.2f%%, not recorded %.2f%%%n",
+				100.0 * stats.getBranchCount(TicTacToeController.BRANCH_WIN) / decisions,
+				100.0 * stats.getBranchCount(TicTacToeController.BRANCH_DEFEND) / decisions,
+				100.0 * stats.getBranchCount(TicTacToeController.BRANCH_HEURISTIC) / decisions,
+				100.0 * stats.getBranchCount(TicTacToeController.BRANCH_NONE) / decisions,
+				100.0 * stats.getBranchCount(BRANCH_UNKNOWN) / decisions);
+
+		System.out.println("\nMost played openings (first mover, moves as row,col): AI win / tie / AI loss");
+		int[] order = new int[2 * 81];
+		long[] played = new long[order.length];
+		for (int i = 0; i < order.length; ++i) {
+			order[i] = i;
+			played[i] = stats.openings[i * 3] + stats.openings[i * 3 + 1] + stats.openings[i * 3 + 2];
+		}
+		for (int n = 0; n < Math.min(top, order.length); ++n) {
+			int best = n;
+			for (int i = n + 1; i < order.length; ++i) {
+				if (played[order[i]] > played[order[best]]) {
+					best = i;
+				}
+			}
+			int opening = order[best];
+			order[best] = order[n];
+			order[n] = opening;
+			if (played[opening] == 0) {
+				break;
+			}
+			int first = opening / 81 + 1;
+			int m0 = opening / 9 % 9;
+			int m1 = opening % 9;
+			System.out.printf("  %-4s (%d,%d) (%d,%d): %5.1f%% / %5.1f%% / %5.1f%%  in %d games%n",
+					first == 1 ? "user" : "AI", m0 / 3, m0 % 3, m1 / 3, m1 % 3,
+					100.0 * stats.getOpeningResults(first, m0, m1, 2) / played[opening],
+					100.0 * stats.getOpeningResults(first, m0, m1, 0) / played[opening],
+					100.0 * stats.getOpeningResults(first, m0, m1, 1) / played[opening], played[opening]);
+		}
+
+		System.out.println("\nPositions that led to the most AI losses (AI to move):");
+		for (int packed : stats.topLossPositions(top)) {
+			System.out.printf("  %s  lost %d of %d games, mostly decided by %s%n", describe(packed),
+					stats.getPositionLosses(packed), stats.getPositionVisits(packed),
+					BRANCH_NAMES[stats.getPositionBranch(packed)]);
+		}
+	}
+}
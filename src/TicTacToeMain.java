@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.util.Scanner;
 
 /**
@@ -10,8 +11,17 @@ import java.util.Scanner;
 public class TicTacToeMain extends TicTacToeController {
 	
 	private int [][] gameBoard = new int [3][3];
+	private TicTacToeGameState gameState = new TicTacToeGameState();
 	private TicTacToeView gameView = new TicTacToeView();
+	// one scanner for every prompt, so input typed ahead or piped in is not lost
+	private final Scanner input = new Scanner(System.in);
 	private boolean gameOver = false;
+	// think about the AI replies while the user decides
+	private boolean pondering = true;
+	private TicTacToePonder ponder = null;
+	// finished games are recorded here if set
+	private TicTacToeGameLog gameLog = null;
+	private long sessionId = 0;
 	
 	// 0 = nothing placed
 	// 1 = x placed = user
@@ -32,7 +42,8 @@ public class TicTacToeMain extends TicTacToeController {
 	 * This is the main method for playing the game, where
 	 * it will print the board first to show an empty table. If it's
 	 * user's term, it will prompt for input and checked whether the
-	 * input is valid. If it's AI's term, it will call functions in
+	 * input is valid, while the AI ponders its replies in the
+	 * background. If it's AI's term, it will call functions in
 	 * the TicTacToeController to handle AI's logic. The while loop
 	 * will end until either of user or AI wins or the game is a tie.
 	 * 
@@ -42,16 +53,24 @@ public class TicTacToeMain extends TicTacToeController {
 		int turn = firstMove;
 		int row_moved;
 		int col_moved;
+		// branch that decided every AI move, for the game log
+		int branches = 0;
+		int aiMoves = 0;
 		System.out.println("\nInitial Board");
 		gameView.printBoard(this.getGameBoard());		
 		while (!this.checkTie()) {
 			if (turn == 1) {
 				System.out.println("\nUser's turn");
+				if (this.pondering) {
+					this.ponder = TicTacToePonder.start(this, this.gameState.getPacked());
+				}
 				int[] userMoved = this.usersTerm();
 				row_moved = userMoved[0];
 				col_moved = userMoved[1];
 				this.gameBoard[row_moved][col_moved] = 1;
-				if (this.checkStateAfterMove(row_moved, col_moved, this.gameBoard)) {
+				if (this.gameState.apply(row_moved, col_moved, 1)) {
+					this.stopPondering();
+					this.recordGame(firstMove, branches);
 					gameView.printBoard(this.getGameBoard());		
 					System.out.println("User has won!");
 					return;
@@ -59,11 +78,20 @@ public class TicTacToeMain extends TicTacToeController {
 				turn = 2;
 			} else {
 				System.out.println("\nAI's turn");
-				int [] AI_move = this.getAIPosition(this.gameBoard);
+				int decision;
+				if (this.ponder != null) {
+					decision = this.ponder.replyDecision(this.gameState.getPacked());
+					this.ponder = null;
+				} else {
+					decision = this.getAIDecision(this.gameState.getPacked());
+				}
+				branches = TicTacToeGameLog.addBranch(branches, aiMoves++, evaluationBranch(decision));
+				int [] AI_move = toPosition(evaluationCell(decision));
 				row_moved = AI_move[0];
 				col_moved = AI_move[1];
 				this.gameBoard[row_moved][col_moved] = 2;
-				if (this.checkStateAfterMove(row_moved, col_moved, this.gameBoard)) {
+				if (this.gameState.apply(row_moved, col_moved, 2)) {
+					this.recordGame(firstMove, branches);
 					gameView.printBoard(this.getGameBoard());		
 					System.out.println("AI has won!");
 					return;
@@ -72,9 +100,61 @@ public class TicTacToeMain extends TicTacToeController {
 			}
 			gameView.printBoard(this.getGameBoard());		
 		}
+		this.stopPondering();
+		this.recordGame(firstMove, branches);
 		System.out.println("\nTie!");
 	}
 	
+	/**
+	 * This recordGame() method adds the finished game to the game log,
+	 * if there is one. A failed write is reported but does not stop the game.
+	 * 
+	 * @param firstMove who made the first move
+	 * @param branches branch that decided every AI move, see TicTacToeGameLog.addBranch()
+	 */
+	private void recordGame(int firstMove, int branches) {
+		if (this.gameLog == null) {
+			return;
+		}
+		try {
+			this.gameLog.record(this.sessionId, firstMove, this.gameState, branches);
+		} catch (IOException e) {
+			System.out.println("Error: the game could not be logged (" + e.getMessage() + ")");
+		}
+	}
+	
+	/**
+	 * This sets the log that finished games are recorded in
+	 * 
+	 * @param gameLog game log, null to record nothing
+	 * @param sessionId id stored with the games of this object
+	 */
+	public void setGameLog(TicTacToeGameLog gameLog, long sessionId) {
+		this.gameLog = gameLog;
+		this.sessionId = sessionId;
+	}
+	
+	/**
+	 * This stopPondering() method throws away the replies that were
+	 * worked out during the user's turn, when they are not needed
+	 */
+	private void stopPondering() {
+		if (this.ponder != null) {
+			this.ponder.cancel();
+			this.ponder = null;
+		}
+	}
+	
+	/**
+	 * This turns pondering on or off. With pondering the AI works out
+	 * its reply to every user move while the user is deciding.
+	 * 
+	 * @param pondering true to think during the user's turn
+	 */
+	public void setPondering(boolean pondering) {
+		this.pondering = pondering;
+	}
+	
 	/**
 	 * This returns the game board data currrently. 
 	 * @return current game board data
@@ -92,7 +172,7 @@ public class TicTacToeMain extends TicTacToeController {
 	 * @return the player that has the first move
 	 */
 	private int determineFirstMove() {
-		Scanner input = new Scanner(System.in);
+		Scanner input = this.input;
 		System.out.print("Who moves first? (u : user, p : program): ");
 		String x = input.next().toLowerCase();
 		while (!x.equals("u") && !x.equals("p")) {
@@ -122,13 +202,11 @@ public class TicTacToeMain extends TicTacToeController {
 		int rowMove = this.promptUserRow();
 		int colMove = this.promptUserColumn();
 		while (true) {
-			if (rowMove < 0 || rowMove > 2 || colMove < 0 || colMove > 2) {
-				System.out.println("Error: Row and Column specified should be in range 0 to 2");
-			} else if (this.gameBoard[rowMove][colMove] != 0) {
-				System.out.println("Error: Position specified is already occupied");
-			} else {
+			String error = TicTacToeSession.validateUserMove(rowMove, colMove, this.gameState.getPacked());
+			if (error == null) {
 				break;
 			}
+			System.out.println(error);
 			rowMove = this.promptUserRow();
 			colMove = this.promptUserColumn();
 		}
@@ -146,7 +224,7 @@ public class TicTacToeMain extends TicTacToeController {
 	 */
 	private int promptUserRow() {
 		System.out.print("Enter the row to move: ");
-		Scanner inputRow = new Scanner(System.in);
+		Scanner inputRow = this.input;
 		while (!inputRow.hasNextInt()) {
 			System.out.println("Error!: Input row must be an integer");
 			System.out.print("Enter the row to move: ");
@@ -164,7 +242,7 @@ public class TicTacToeMain extends TicTacToeController {
 	 */
 	private int promptUserColumn() {
 		System.out.print("Enter the column to move: ");
-		Scanner inputColumn = new Scanner(System.in);
+		Scanner inputColumn = this.input;
 		while(!inputColumn.hasNextInt()) {
 			System.out.println("Error!: Input column must be an integer");
 			System.out.print("Enter the column to move: ");
@@ -176,21 +254,13 @@ public class TicTacToeMain extends TicTacToeController {
 	/**
 	 * this checkTie() method will check if the current game state
 	 * is a tie. A game is a tie if every position is filled while
-	 * there is no winner
+	 * there is no winner. gameSteps() returns as soon as someone
+	 * wins, so only the filled cell counter of the game state is needed.
 	 * 
 	 * @return a boolean statement whether the game state now is a tie or not
 	 */
 	private boolean checkTie() {
-		// if all positions have been placed (position != 0)
-		// if no one won, return true, return false otherwise
-		for (int i = 0; i < 3; ++i) {
-			for (int j = 0; j < 3; ++j) {
-				if (this.gameBoard[i][j] == 0) {
-					return false;
-				}
-			}
-		}
-		return true;
+		return this.gameState.isFull();
 	}
 	
 }
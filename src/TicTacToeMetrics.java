@@ -0,0 +1,218 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ *
+ * This class collects metrics about the AI's decisions: how long each
+ * getAIPosition() call took, which branch decided the move, how many
+ * cells selectBasedOnHeuristics() scored and how many times
+ * checkStateAfterMove() was called. Counters are LongAdders and the
+ * latencies go into a TicTacToeHistogram, so recording never locks.
+ *
+ * A controller only records while metrics are set with
+ * TicTacToeController.setMetrics(). Without them the decision path
+ * does nothing extra but one null check. The numbers can be read with
+ * snapshot() or through JMX after register().
+ *
+ */
+public class TicTacToeMetrics implements TicTacToeMetricsMBean {
+
+	private final TicTacToeHistogram latency = new TicTacToeHistogram();
+	// decisions by TicTacToeController branch, BRANCH_NONE is a strategy
+	private final LongAdder[] branches = {new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()};
+	private final LongAdder candidates = new LongAdder();
+	private final LongAdder probes = new LongAdder();
+
+	/**
+	 * This recordDecision() method counts one finished decision
+	 *
+	 * @param nanos how long the decision took
+	 * @param branch branch of TicTacToeController that decided, BRANCH_NONE for a strategy
+	 * @param candidates cells scored by selectBasedOnHeuristics(), 0 if it was not used
+	 */
+	public void recordDecision(long nanos, int branch, int candidates) {
+		this.latency.record(nanos);
+		this.branches[branch].increment();
+		if (candidates != 0) {
+			this.candidates.add(candidates);
+		}
+	}
+
+	/**
+	 * This recordProbe() method counts one checkStateAfterMove() call
+	 */
+	public void recordProbe() {
+		this.probes.increment();
+	}
+
+	@Override
+	public long getDecisions() {
+		return this.latency.getCount();
+	}
+
+	@Override
+	public long getWinDecisions() {
+		return this.branches[TicTacToeController.BRANCH_WIN].sum();
+	}
+
+	@Override
+	public long getDefendDecisions() {
+		return this.branches[TicTacToeController.BRANCH_DEFEND].sum();
+	}
+
+	@Override
+	public long getHeuristicDecisions() {
+		return this.branches[TicTacToeController.BRANCH_HEURISTIC].sum();
+	}
+
+	@Override
+	public long getStrategyDecisions() {
+		return this.branches[TicTacToeController.BRANCH_NONE].sum();
+	}
+
+	@Override
+	public long getCandidates() {
+		return this.candidates.sum();
+	}
+
+	@Override
+	public long getProbes() {
+		return this.probes.sum();
+	}
+
+	@Override
+	public long getLatencyP50() {
+		return this.latency.getPercentile(50);
+	}
+
+	@Override
+	public long getLatencyP99() {
+		return this.latency.getPercentile(99);
+	}
+
+	@Override
+	public long getLatencyP999() {
+		return this.latency.getPercentile(99.9);
+	}
+
+	@Override
+	public long getLatencyMax() {
+		return this.latency.getMax();
+	}
+
+	/**
+	 * @return the latency histogram, to read other percentiles or merge it
+	 */
+	public TicTacToeHistogram getLatency() {
+		return this.latency;
+	}
+
+	@Override
+	public void reset() {
+		this.latency.reset();
+		for (LongAdder branch : this.branches) {
+			branch.reset();
+		}
+		this.candidates.reset();
+		this.probes.reset();
+	}
+
+	/**
+	 * This register() method makes the metrics visible in JMX, for
+	 * example in jconsole, under tictactoe:type=Metrics,name=...
+	 *
+	 * @param name name of these metrics
+	 * @throws JMException if the name is invalid or already registered
+	 */
+	public void register(String name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+				new ObjectName("tictactoe:type=Metrics,name=" + ObjectName.quote(name)));
+	}
+
+	/**
+	 * @return the metrics at this moment, they do not change afterwards
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	/**
+	 *
+	 * The metrics at one moment. Counters read while other threads
+	 * record may be a few decisions apart from each other.
+	 *
+	 */
+	public static class Snapshot {
+		private final long decisions;
+		private final long[] branches = new long[4];
+		private final long candidates;
+		private final long probes;
+		private final long p50;
+		private final long p99;
+		private final long p999;
+		private final long max;
+
+		Snapshot(TicTacToeMetrics metrics) {
+			this.decisions = metrics.getDecisions();
+			for (int branch = 0; branch < this.branches.length; ++branch) {
+				this.branches[branch] = metrics.branches[branch].sum();
+			}
+			this.candidates = metrics.getCandidates();
+			this.probes = metrics.getProbes();
+			this.p50 = metrics.getLatencyP50();
+			this.p99 = metrics.getLatencyP99();
+			this.p999 = metrics.getLatencyP999();
+			this.max = metrics.getLatencyMax();
+		}
+
+		public long getDecisions() {
+			return this.decisions;
+		}
+
+		/**
+		 * @param branch branch of TicTacToeController, BRANCH_NONE for a strategy
+		 * @return decisions made by that branch
+		 */
+		public long getBranchCount(int branch) {
+			return this.branches[branch];
+		}
+
+		public long getCandidates() {
+			return this.candidates;
+		}
+
+		public long getProbes() {
+			return this.probes;
+		}
+
+		public long getLatencyP50() {
+			return this.p50;
+		}
+
+		public long getLatencyP99() {
+			return this.p99;
+		}
+
+		public long getLatencyP999() {
+			return this.p999;
+		}
+
+		public long getLatencyMax() {
+			return this.max;
+		}
+
+		@Override
+		public String toString() {
+			double perDecision = this.decisions == 0 ? 0 : 1.0 / this.decisions;
+			return String.format("%d decisions (win %d, defend %d, heuristics %d, strategy %d), "
+					+ "%.1f candidates and %.1f probes per decision, latency p50 %d ns, p99 %d ns, p99.9 %d ns, max %d ns",
+					this.decisions, this.branches[TicTacToeController.BRANCH_WIN],
+					this.branches[TicTacToeController.BRANCH_DEFEND], this.branches[TicTacToeController.BRANCH_HEURISTIC],
+					this.branches[TicTacToeController.BRANCH_NONE], this.candidates * perDecision,
+					this.probes * perDecision, this.p50, this.p99, this.p999, this.max);
+		}
+	}
+}
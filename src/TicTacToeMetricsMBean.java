@@ -0,0 +1,56 @@
+
+/**
+ * 
+ * The JMX view of TicTacToeMetrics. All times are in nanoseconds.
+ *
+ */
+public interface TicTacToeMetricsMBean {
+	
+	/**
+	 * @return number of getAIPosition() decisions recorded
+	 */
+	long getDecisions();
+	
+	/**
+	 * @return decisions made by existWinMove()
+	 */
+	long getWinDecisions();
+	
+	/**
+	 * @return decisions made by existMustDefend()
+	 */
+	long getDefendDecisions();
+	
+	/**
+	 * @return decisions made by selectBasedOnHeuristics()
+	 */
+	long getHeuristicDecisions();
+	
+	/**
+	 * @return decisions made by a selected strategy
+	 */
+	long getStrategyDecisions();
+	
+	/**
+	 * @return cells scored by selectBasedOnHeuristics()
+	 */
+	long getCandidates();
+	
+	/**
+	 * @return calls of checkStateAfterMove()
+	 */
+	long getProbes();
+	
+	long getLatencyP50();
+	
+	long getLatencyP99();
+	
+	long getLatencyP999();
+	
+	long getLatencyMax();
+	
+	/**
+	 * start counting again from 0
+	 */
+	void reset();
+}
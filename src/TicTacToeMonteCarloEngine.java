@@ -0,0 +1,573 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * This class picks a move with Monte Carlo Tree Search, for boards
+ * too large to search to the end. Every playout finishes the game
+ * with the same priorities as the heuristic AI: win now if possible
+ * (existWinMove()), else block the opponent's win (existMustDefend()),
+ * else play a random empty cell. The wins and defences are found on
+ * the line counters of the board, so a move costs only the lines
+ * through its cell. On the classic 3x3 board the playouts run on the
+ * packed board of TicTacToeBitboard instead, where a win or a defence
+ * is a few mask tests and nothing has to be taken back.
+ *
+ * The engine scales with root parallelization: every thread grows its
+ * own tree from the same position and nothing is shared while they
+ * run. At the end each thread adds the statistics of its root moves to
+ * atomic counters, and the move visited most often overall is played.
+ *
+ * A search() call must not overlap another on the same engine.
+ *
+ */
+public class TicTacToeMonteCarloEngine {
+
+	// exploration constant of the UCT formula
+	private static final double EXPLORATION = 1.0;
+	// large boards only expand empty cells this close to a piece
+	private static final int NEIGHBOURHOOD = 2;
+	private static final int SMALL_BOARD = 25;
+	// tree nodes per thread: the arrays start small and double while the
+	// tree grows, and the tree stops growing at MAX_NODES
+	private static final int INITIAL_NODES = 1 << 10;
+	private static final int MAX_NODES = 1 << 18;
+
+	private final TicTacToeGeometry geometry;
+	private final int threads;
+	// playouts run on the packed board
+	private final boolean classic;
+	private final ForkJoinPool pool;
+	private final Worker[] workers;
+
+	// statistics of the root moves of all threads, by cell
+	private final AtomicLongArray rootVisits;
+	// score in half points: 2 for a win, 1 for a tie
+	private final AtomicLongArray rootScores;
+
+	/**
+	 * @param geometry board the engine plays on
+	 * @param threads number of trees searched at the same time, 1 runs
+	 * in the calling thread without a pool
+	 */
+	public TicTacToeMonteCarloEngine(TicTacToeGeometry geometry, int threads) {
+		this.geometry = geometry;
+		this.threads = threads;
+		this.classic = geometry == TicTacToeGeometry.CLASSIC;
+		this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		this.workers = new Worker[threads];
+		for (int i = 0; i < threads; ++i) {
+			this.workers[i] = new Worker();
+		}
+		this.rootVisits = new AtomicLongArray(geometry.getCells());
+		this.rootScores = new AtomicLongArray(geometry.getCells());
+	}
+
+	/**
+	 *
+	 * The outcome of one decision: the move, how often it was tried
+	 * and how it scored, and how fast the playouts ran.
+	 *
+	 */
+	public static class Result {
+		private final int move;
+		private final long visits;
+		private final double winRate;
+		private final long playouts;
+		private final long elapsedNanos;
+		private final int threads;
+
+		Result(int move, long visits, double winRate, long playouts, long elapsedNanos, int threads) {
+			this.move = move;
+			this.visits = visits;
+			this.winRate = winRate;
+			this.playouts = playouts;
+			this.elapsedNanos = elapsedNanos;
+			this.threads = threads;
+		}
+
+		/**
+		 * @return the cell to move, -1 if the game was already over or
+		 * the deadline expired before any playout
+		 */
+		public int getMove() {
+			return this.move;
+		}
+
+		/**
+		 * @return number of playouts through the move
+		 */
+		public long getVisits() {
+			return this.visits;
+		}
+
+		/**
+		 * @return share of those playouts won by the player to move, a tie counts half
+		 */
+		public double getWinRate() {
+			return this.winRate;
+		}
+
+		/**
+		 * @return number of playouts of all threads
+		 */
+		public long getPlayouts() {
+			return this.playouts;
+		}
+
+		public long getElapsedNanos() {
+			return this.elapsedNanos;
+		}
+
+		/**
+		 * @return playouts per second of all threads
+		 */
+		public double getPlayoutsPerSecond() {
+			return this.elapsedNanos == 0 ? 0 : this.playouts * 1e9 / this.elapsedNanos;
+		}
+
+		/**
+		 * @return playouts per second of one thread, it stays the same if scaling is linear
+		 */
+		public double getPlayoutsPerSecondPerThread() {
+			return this.getPlayoutsPerSecond() / this.threads;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("move %d visits %d win rate %.3f playouts %d (%.0f/sec, %.0f/sec per thread)",
+					this.move, this.visits, this.winRate, this.playouts,
+					this.getPlayoutsPerSecond(), this.getPlayoutsPerSecondPerThread());
+		}
+	}
+
+	/**
+	 * This search() method runs playouts until the budget is spent or
+	 * the deadline expires. A win in one move is played at once and a
+	 * loss in one move is blocked at once, without any playouts.
+	 *
+	 * @param board game board, must use the geometry of this engine, it is not changed
+	 * @param player the player to move
+	 * @param playouts total number of playouts of all threads
+	 * @param deadline time budget, null for none
+	 * @return the decision, its move is -1 if no playout was finished
+	 */
+	public Result search(TicTacToeGeneralBoard board, int player, long playouts, TicTacToeDeadline deadline) {
+		long start = System.nanoTime();
+		if (board.isOver()) {
+			return new Result(-1, 0, 0, 0, System.nanoTime() - start, this.threads);
+		}
+		int forced = board.findWinCell(player);
+		if (forced == -1) {
+			forced = board.findWinCell(3 - player);
+		}
+		if (forced != -1) {
+			return new Result(forced, 0, 0, 0, System.nanoTime() - start, this.threads);
+		}
+
+		for (int cell = 0; cell < this.geometry.getCells(); ++cell) {
+			this.rootVisits.set(cell, 0);
+			this.rootScores.set(cell, 0);
+		}
+		long share = playouts / this.threads;
+		if (this.pool == null) {
+			this.workers[0].prepare(board, player, playouts, deadline);
+			this.workers[0].run();
+		} else {
+			ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[this.threads];
+			for (int i = 0; i < this.threads; ++i) {
+				this.workers[i].prepare(board, player, i == 0 ? playouts - share * (this.threads - 1) : share, deadline);
+				tasks[i] = this.pool.submit(this.workers[i]);
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		}
+
+		long total = 0;
+		for (Worker worker : this.workers) {
+			total += worker.playouts;
+		}
+		int bestMove = -1;
+		long bestVisits = 0;
+		for (int cell = 0; cell < this.geometry.getCells(); ++cell) {
+			long visits = this.rootVisits.get(cell);
+			if (board.get(cell) == 0 && visits > bestVisits) {
+				bestVisits = visits;
+				bestMove = cell;
+			}
+		}
+		double winRate = bestVisits == 0 ? 0 : this.rootScores.get(bestMove) / (2.0 * bestVisits);
+		return new Result(bestMove, bestVisits, winRate, total, System.nanoTime() - start, this.threads);
+	}
+
+	/**
+	 * This shutdown() method stops the threads of the engine, it cannot search afterwards
+	 */
+	public void shutdown() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return the geometry this engine plays on
+	 */
+	public TicTacToeGeometry getGeometry() {
+		return this.geometry;
+	}
+
+	/**
+	 * @return number of threads that search
+	 */
+	public int getThreads() {
+		return this.threads;
+	}
+
+	/**
+	 *
+	 * One thread's tree, kept in flat arrays that are reused between
+	 * decisions. Node 0 is the root, the children of a node are stored
+	 * next to each other. The arrays only grow as far as the largest
+	 * tree this worker has built.
+	 *
+	 */
+	private class Worker implements Runnable {
+		private int[] move = new int[INITIAL_NODES];
+		private int[] parent = new int[INITIAL_NODES];
+		private int[] firstChild = new int[INITIAL_NODES];
+		private int[] childCount = new int[INITIAL_NODES];
+		private int[] visits = new int[INITIAL_NODES];
+		// half points for the player who made the move of the node
+		private int[] score = new int[INITIAL_NODES];
+		private int size;
+
+		// playout state
+		private final int[] empties = new int[geometry.getCells()];
+		private final int[] position = new int[geometry.getCells()];
+		private final int[][] threats = new int[3][geometry.getLineCount()];
+		private final int[] threatCount = new int[3];
+
+		private TicTacToeGeneralBoard board;
+		// the board as a packed int, only on the classic board
+		private int packed;
+		private int player;
+		private long budget;
+		private TicTacToeDeadline deadline;
+		private long playouts;
+
+		void prepare(TicTacToeGeneralBoard board, int player, long budget, TicTacToeDeadline deadline) {
+			this.board = new TicTacToeGeneralBoard(board);
+			this.packed = 0;
+			if (classic) {
+				for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+					if (board.get(cell) != 0) {
+						this.packed = TicTacToeBitboard.place(this.packed, cell, board.get(cell));
+					}
+				}
+			}
+			this.player = player;
+			this.budget = budget;
+			this.deadline = deadline;
+			this.playouts = 0;
+			this.size = 1;
+			this.move[0] = -1;
+			this.parent[0] = -1;
+			this.childCount[0] = 0;
+			this.visits[0] = 0;
+			this.score[0] = 0;
+		}
+
+		@Override
+		public void run() {
+			while (this.playouts < this.budget && (this.deadline == null || !this.deadline.isExpired())) {
+				this.iterate();
+				++this.playouts;
+			}
+			for (int i = 0; i < this.childCount[0]; ++i) {
+				int child = this.firstChild[0] + i;
+				rootVisits.addAndGet(this.move[child], this.visits[child]);
+				rootScores.addAndGet(this.move[child], this.score[child]);
+			}
+			this.board = null;
+		}
+
+		/**
+		 * One playout: walk down the tree, grow it by one level, finish
+		 * the game and count the result on the way back up
+		 */
+		private void iterate() {
+			TicTacToeGeneralBoard board = this.board;
+			int packed = this.packed;
+			int node = 0;
+			int turn = this.player;
+			int depth = 0;
+			while (this.childCount[node] > 0) {
+				node = this.selectChild(node);
+				board.apply(this.move[node], turn);
+				packed = TicTacToeBitboard.place(packed, this.move[node], turn);
+				turn = 3 - turn;
+				++depth;
+			}
+			if (!board.isOver() && (node == 0 || this.visits[node] > 0) && this.expand(node, turn)) {
+				node = this.firstChild[node];
+				board.apply(this.move[node], turn);
+				packed = TicTacToeBitboard.place(packed, this.move[node], turn);
+				turn = 3 - turn;
+				++depth;
+			}
+
+			int winner;
+			if (board.isOver()) {
+				winner = board.getWinner();
+			} else if (classic) {
+				winner = this.playout(packed, turn);
+			} else {
+				winner = this.playout(turn);
+			}
+			// the player who made the move of the leaf
+			int mover = 3 - turn;
+			while (node != -1) {
+				++this.visits[node];
+				this.score[node] += winner == 0 ? 1 : winner == mover ? 2 : 0;
+				mover = 3 - mover;
+				node = this.parent[node];
+			}
+			for (int i = 0; i < depth; ++i) {
+				board.undo();
+			}
+		}
+
+		private int selectChild(int node) {
+			double logVisits = Math.log(this.visits[node]);
+			int first = this.firstChild[node];
+			int best = first;
+			double bestValue = -1;
+			for (int child = first; child < first + this.childCount[node]; ++child) {
+				int n = this.visits[child];
+				if (n == 0) {
+					return child;
+				}
+				double value = this.score[child] / (2.0 * n) + EXPLORATION * Math.sqrt(logVisits / n);
+				if (value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Adds the moves of the player to move as children. Like the
+		 * playouts, a win or a forced defence is the only child.
+		 *
+		 * @return false if the tree is full
+		 */
+		private boolean expand(int node, int turn) {
+			TicTacToeGeneralBoard board = this.board;
+			int cells = geometry.getCells();
+			if (this.size + cells > this.move.length && !this.grow(this.size + cells)) {
+				return false;
+			}
+			int forced = board.findWinCell(turn);
+			if (forced == -1) {
+				forced = board.findWinCell(3 - turn);
+			}
+			int first = this.size;
+			if (forced != -1) {
+				this.addChild(node, forced);
+			} else {
+				boolean nearOnly = cells > SMALL_BOARD && board.getMoveCount() > 0;
+				for (int cell = 0; cell < cells; ++cell) {
+					if (board.get(cell) == 0 && (!nearOnly || board.hasPieceNear(cell, NEIGHBOURHOOD))) {
+						this.addChild(node, cell);
+					}
+				}
+			}
+			this.firstChild[node] = first;
+			this.childCount[node] = this.size - first;
+			return this.size > first;
+		}
+
+		/**
+		 * Doubles the arrays until they hold the nodes
+		 *
+		 * @return false if that is more than MAX_NODES
+		 */
+		private boolean grow(int nodes) {
+			if (nodes > MAX_NODES) {
+				return false;
+			}
+			int length = this.move.length;
+			while (length < nodes) {
+				length *= 2;
+			}
+			this.move = Arrays.copyOf(this.move, length);
+			this.parent = Arrays.copyOf(this.parent, length);
+			this.firstChild = Arrays.copyOf(this.firstChild, length);
+			this.childCount = Arrays.copyOf(this.childCount, length);
+			this.visits = Arrays.copyOf(this.visits, length);
+			this.score = Arrays.copyOf(this.score, length);
+			return true;
+		}
+
+		private void addChild(int node, int cell) {
+			int child = this.size++;
+			this.move[child] = cell;
+			this.parent[child] = node;
+			this.childCount[child] = 0;
+			this.visits[child] = 0;
+			this.score[child] = 0;
+		}
+
+		/**
+		 * Finishes the game from the board with the playout policy and
+		 * takes the moves back afterwards
+		 *
+		 * @return the player who won, or 0 for a tie
+		 */
+		private int playout(int turn) {
+			TicTacToeGeneralBoard board = this.board;
+			int k = geometry.getK();
+			int emptyCount = 0;
+			for (int cell = 0; cell < geometry.getCells(); ++cell) {
+				if (board.get(cell) == 0) {
+					this.position[cell] = emptyCount;
+					this.empties[emptyCount++] = cell;
+				}
+			}
+			this.threatCount[1] = 0;
+			this.threatCount[2] = 0;
+			for (int line = 0; line < geometry.getLineCount(); ++line) {
+				for (int p = 1; p <= 2; ++p) {
+					if (board.getLineCount(p, line) == k - 1 && board.getLineCount(3 - p, line) == 0) {
+						this.threats[p][this.threatCount[p]++] = line;
+					}
+				}
+			}
+
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int played = 0;
+			int winner = 0;
+			while (emptyCount > 0) {
+				int cell = this.threatCell(turn);
+				if (cell == -1) {
+					cell = this.threatCell(3 - turn);
+				}
+				if (cell == -1) {
+					cell = this.empties[random.nextInt(emptyCount)];
+				}
+				int last = this.empties[--emptyCount];
+				int at = this.position[cell];
+				this.empties[at] = last;
+				this.position[last] = at;
+
+				++played;
+				if (board.apply(cell, turn)) {
+					winner = turn;
+					break;
+				}
+				for (int line : geometry.getCellLines(cell)) {
+					if (board.getLineCount(turn, line) == k - 1 && board.getLineCount(3 - turn, line) == 0) {
+						this.threats[turn][this.threatCount[turn]++] = line;
+					}
+				}
+				turn = 3 - turn;
+			}
+			for (int i = 0; i < played; ++i) {
+				board.undo();
+			}
+			return winner;
+		}
+
+		/**
+		 * Finishes the game from a packed classic board with the playout
+		 * policy, the board is a local copy so nothing is taken back
+		 *
+		 * @return the player who won, or 0 for a tie
+		 */
+		private int playout(int packed, int turn) {
+			int mover = TicTacToeBitboard.mask(packed, turn);
+			int other = TicTacToeBitboard.mask(packed, 3 - turn);
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			while (true) {
+				int empty = ~(mover | other) & TicTacToeBitboard.FULL;
+				if (empty == 0) {
+					return 0;
+				}
+				if (TicTacToeBitboard.winCells(mover, other) != 0) {
+					return turn;
+				}
+				int cells = TicTacToeBitboard.winCells(other, mover);
+				if (cells == 0) {
+					cells = empty;
+					for (int skip = random.nextInt(Integer.bitCount(empty)); skip > 0; --skip) {
+						cells &= cells - 1;
+					}
+				}
+				mover |= Integer.lowestOneBit(cells);
+				int swap = mover;
+				mover = other;
+				other = swap;
+				turn = 3 - turn;
+			}
+		}
+
+		/**
+		 * The empty cell that completes a line of the player, lines the
+		 * opponent has blocked since are dropped
+		 *
+		 * @return the cell, -1 if there is none
+		 */
+		private int threatCell(int player) {
+			int[] lines = this.threats[player];
+			while (this.threatCount[player] > 0) {
+				int line = lines[this.threatCount[player] - 1];
+				if (this.board.getLineCount(3 - player, line) == 0) {
+					for (int cell : geometry.getLineCells(line)) {
+						if (this.board.get(cell) == 0) {
+							return cell;
+						}
+					}
+				}
+				--this.threatCount[player];
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Measures playouts per second on an empty board with 1, 2, 4, ...
+	 * threads up to all cores, to show how the search scales.
+	 *
+	 * @param args width, height, k (default 15 15 5), seconds per run (default 2)
+	 */
+	public static void main(String[] args) {
+		int width = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+		int height = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+		int k = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 2;
+		TicTacToeGeometry geometry = TicTacToeGeometry.of(width, height, k);
+		TicTacToeGeneralBoard board = new TicTacToeGeneralBoard(geometry);
+		board.apply(geometry.cell(height / 2, width / 2), 1);
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println(width + "x" + height + " with " + k + " in a row, " + cores + " cores");
+		for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+			TicTacToeMonteCarloEngine engine = new TicTacToeMonteCarloEngine(geometry, threads);
+			// warm up
+			engine.search(board, 2, Long.MAX_VALUE, TicTacToeDeadline.after((long) (seconds * 1e9 / 4)));
+			Result result = engine.search(board, 2, Long.MAX_VALUE, TicTacToeDeadline.after((long) (seconds * 1e9)));
+			engine.shutdown();
+			System.out.printf("%2d threads: %10.0f playouts/sec, %10.0f per thread, move (%d,%d)%n", threads,
+					result.getPlayoutsPerSecond(), result.getPlayoutsPerSecondPerThread(),
+					geometry.row(result.getMove()), geometry.column(result.getMove()));
+			if (threads == cores) {
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+
+/**
+ * 
+ * This strategy plays the classic board with TicTacToeMonteCarloEngine,
+ * one single threaded engine per thread so the strategy can be shared.
+ * With a deadline it stops early and plays the most visited move so far.
+ *
+ */
+public class TicTacToeMonteCarloStrategy implements TicTacToeAnytimeStrategy {
+	
+	public static final long DEFAULT_PLAYOUTS = 2000;
+	
+	private final long playouts;
+	
+	private final ThreadLocal<TicTacToeMonteCarloEngine> engines = new ThreadLocal<TicTacToeMonteCarloEngine>() {
+		@Override
+		protected TicTacToeMonteCarloEngine initialValue() {
+			return new TicTacToeMonteCarloEngine(TicTacToeGeometry.CLASSIC, 1);
+		}
+	};
+	
+	private final ThreadLocal<TicTacToeGeneralBoard> boards = new ThreadLocal<TicTacToeGeneralBoard>() {
+		@Override
+		protected TicTacToeGeneralBoard initialValue() {
+			return new TicTacToeGeneralBoard(TicTacToeGeometry.CLASSIC);
+		}
+	};
+	
+	/**
+	 * @param playouts number of playouts per move
+	 */
+	public TicTacToeMonteCarloStrategy(long playouts) {
+		this.playouts = playouts;
+	}
+	
+	public TicTacToeMonteCarloStrategy() {
+		this(DEFAULT_PLAYOUTS);
+	}
+	
+	@Override
+	public int selectMove(int packed) {
+		return this.search(packed, null).getMove();
+	}
+	
+	@Override
+	public int selectMove(int packed, TicTacToeDeadline deadline, int fallback) {
+		int move = this.search(packed, deadline).getMove();
+		return move == -1 ? fallback : move;
+	}
+	
+	/**
+	 * @param packed packed game board, AI to move
+	 * @param deadline time budget, null for none
+	 * @return the decision of the engine
+	 */
+	public TicTacToeMonteCarloEngine.Result search(int packed, TicTacToeDeadline deadline) {
+		TicTacToeGeneralBoard board = this.boards.get();
+		board.reset();
+		for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+			int player = TicTacToeBitboard.get(packed, cell);
+			if (player != 0) {
+				board.apply(cell, player);
+			}
+		}
+		return this.engines.get().search(board, 2, this.playouts, deadline);
+	}
+}
@@ -0,0 +1,156 @@
+import java.util.Arrays;
+
+/**
+ *
+ * This strategy plays perfectly by looking up a move table that is
+ * solved once by minimax when the class is loaded. Every board is
+ * indexed in base 3 (0 = empty, 1 = user, 2 = AI), so there are
+ * 3^9 = 19683 entries and a lookup is a single array read.
+ *
+ * Among moves with the same minimax value, the table prefers the
+ * fastest win or the slowest loss, then the lowest cell index.
+ * The table is never written after class loading, so one instance
+ * can be shared between threads.
+ *
+ */
+public class TicTacToePerfectStrategy implements TicTacToeStrategy {
+
+	public static final int WIN = 1;
+	public static final int DRAW = 0;
+	public static final int LOSS = -1;
+
+	public static final int POSITIONS = TicTacToeBitboard.POSITIONS;
+	public static final int NO_MOVE = -1;
+
+	// low 4 bits = best cell (15 if none), high 4 bits = value + 1, for the AI to move
+	private static final byte[] TABLE = new byte[POSITIONS];
+
+	private static final byte UNSOLVED = Byte.MIN_VALUE;
+
+	static {
+		Solver solver = new Solver();
+		for (int index = 0; index < POSITIONS; ++index) {
+			int packed = fromIndex(index);
+			if (isAIToMove(packed)) {
+				int cell = solver.bestMove(packed, 2);
+				int value = Integer.signum(solver.score(packed, 2));
+				TABLE[index] = (byte) ((cell & 0x0F) | ((value + 1) << 4));
+			} else {
+				TABLE[index] = (byte) 0x0F;
+			}
+		}
+	}
+
+	@Override
+	public int selectMove(int packed) {
+		int cell = TABLE[index(packed)] & 0x0F;
+		return cell == 0x0F ? NO_MOVE : cell;
+	}
+
+	/**
+	 * This getValue() method returns the game theoretic value for the
+	 * AI when both sides play perfectly from this board.
+	 *
+	 * @param packed packed game board, AI to move
+	 * @return WIN, DRAW or LOSS for the AI
+	 */
+	public int getValue(int packed) {
+		return ((TABLE[index(packed)] >>> 4) & 0x03) - 1;
+	}
+
+	/**
+	 * This index() method converts a packed board into its base 3 index
+	 *
+	 * @param packed packed game board
+	 * @return index in 0 .. POSITIONS - 1
+	 */
+	public static int index(int packed) {
+		return TicTacToeBitboard.index(packed);
+	}
+
+	/**
+	 * This fromIndex() method converts a base 3 index back into a packed board
+	 *
+	 * @param index index in 0 .. POSITIONS - 1
+	 * @return packed game board
+	 */
+	public static int fromIndex(int index) {
+		return TicTacToeBitboard.fromIndex(index);
+	}
+
+	/**
+	 * A board is an AI's turn if nobody has won, it is not full, and
+	 * the AI has the same number of pieces as the user or one fewer
+	 * (either side may move first).
+	 *
+	 * @param packed packed game board
+	 * @return true if the AI can legally move on this board
+	 */
+	public static boolean isAIToMove(int packed) {
+		int user = TicTacToeBitboard.mask(packed, 1);
+		int ai = TicTacToeBitboard.mask(packed, 2);
+		int diff = Integer.bitCount(user) - Integer.bitCount(ai);
+		if (diff < 0 || diff > 1 || TicTacToeBitboard.emptyCells(packed) == 0) {
+			return false;
+		}
+		return !TicTacToeBitboard.isWin(user) && !TicTacToeBitboard.isWin(ai);
+	}
+
+	/**
+	 *
+	 * Memoized negamax over every board. A score is positive when the
+	 * player to move wins, and larger when the win comes sooner.
+	 *
+	 */
+	private static class Solver {
+		private byte[][] scores = new byte[3][POSITIONS];
+
+		Solver() {
+			Arrays.fill(this.scores[1], UNSOLVED);
+			Arrays.fill(this.scores[2], UNSOLVED);
+		}
+
+		int score(int packed, int player) {
+			int index = index(packed);
+			if (this.scores[player][index] != UNSOLVED) {
+				return this.scores[player][index];
+			}
+			int empty = TicTacToeBitboard.emptyCells(packed);
+			int best;
+			if (TicTacToeBitboard.isWin(TicTacToeBitboard.mask(packed, 3 - player))) {
+				// the previous move won, losing later is better
+				best = -1 - Integer.bitCount(empty);
+			} else if (empty == 0) {
+				best = 0;
+			} else {
+				best = Integer.MIN_VALUE;
+				while (empty != 0) {
+					int cell = Integer.numberOfTrailingZeros(empty);
+					empty &= empty - 1;
+					int score = -this.score(TicTacToeBitboard.place(packed, cell, player), 3 - player);
+					if (score > best) {
+						best = score;
+					}
+				}
+			}
+			this.scores[player][index] = (byte) best;
+			return best;
+		}
+
+		int bestMove(int packed, int player) {
+			int bestCell = NO_MOVE;
+			int best = Integer.MIN_VALUE;
+			int empty = TicTacToeBitboard.emptyCells(packed);
+			while (empty != 0) {
+				int cell = Integer.numberOfTrailingZeros(empty);
+				empty &= empty - 1;
+				int score = -this.score(TicTacToeBitboard.place(packed, cell, player), 3 - player);
+				if (score > best) {
+					best = score;
+					bestCell = cell;
+				}
+			}
+			return bestCell;
+		}
+	}
+}
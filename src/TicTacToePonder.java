@@ -0,0 +1,134 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ *
+ * This class thinks ahead while the user decides. For a board with the
+ * user to move, a background thread asks the controller for the AI
+ * reply to every possible user move and keeps the answers. When the
+ * user has moved, reply() returns the answer for the new board at
+ * once if it was ready, and stops the thread.
+ *
+ * Moves that end the game (a user win or a full board) are skipped,
+ * and cancel() throws everything away, for example when the game is
+ * over. Search strategies are stopped through a TicTacToeDeadline, an
+ * answer cut short that way is never kept.
+ *
+ * The replies are worked out with TicTacToeController.decide(), so
+ * they are not counted in the controller's metrics. Only the reply
+ * that is played is counted, when reply() returns it.
+ *
+ */
+public class TicTacToePonder implements Runnable {
+
+	private static final int NOT_READY = -2;
+
+	private final TicTacToeController controller;
+	private final int packed;
+	// replies[cell] = AI decision, see TicTacToeController.evaluate(), if the user moves on the cell
+	private final AtomicIntegerArray replies = new AtomicIntegerArray(TicTacToeBitboard.CELLS);
+	private final TicTacToeDeadline deadline = new TicTacToeDeadline(TicTacToeClock.SYSTEM, Long.MAX_VALUE / 2);
+	private final Thread thread;
+
+	private TicTacToePonder(TicTacToeController controller, int packed) {
+		this.controller = controller;
+		this.packed = packed;
+		for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+			this.replies.set(cell, NOT_READY);
+		}
+		this.thread = new Thread(this, "TicTacToePonder");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * This start() method starts thinking about a board in the background
+	 *
+	 * @param controller controller that decides the AI moves, with its strategy
+	 * @param packed packed game board, user to move
+	 * @return the running ponder
+	 */
+	public static TicTacToePonder start(TicTacToeController controller, int packed) {
+		TicTacToePonder ponder = new TicTacToePonder(controller, packed);
+		ponder.thread.start();
+		return ponder;
+	}
+
+	@Override
+	public void run() {
+		int userMask = TicTacToeBitboard.mask(this.packed, 1);
+		for (int empty = TicTacToeBitboard.emptyCells(this.packed); empty != 0 && !this.deadline.isCancelled(); empty &= empty - 1) {
+			int cell = Integer.numberOfTrailingZeros(empty);
+			int next = TicTacToeBitboard.place(this.packed, cell, 1);
+			if (TicTacToeBitboard.isWin(userMask | (1 << cell)) || TicTacToeBitboard.emptyCells(next) == 0) {
+				continue;
+			}
+			int reply = this.controller.decide(next, this.deadline);
+			if (!this.deadline.isCancelled()) {
+				this.replies.set(cell, reply);
+			}
+		}
+	}
+
+	/**
+	 * This reply() method returns the AI move for the board after the
+	 * user's move. The background thread is stopped first, and if the
+	 * answer was not ready it is worked out now.
+	 *
+	 * @param next packed game board after the user's move, AI to move
+	 * @return the cell that AI will move
+	 */
+	public int reply(int next) {
+		return TicTacToeController.evaluationCell(this.replyDecision(next));
+	}
+
+	/**
+	 * reply() that also reports the branch that decided, see
+	 * TicTacToeController.getAIDecision()
+	 *
+	 * @param next packed game board after the user's move, AI to move
+	 * @return the packed decision
+	 */
+	public int replyDecision(int next) {
+		long start = System.nanoTime();
+		this.cancel();
+		int moved = next ^ this.packed;
+		if (Integer.bitCount(moved) == 1 && (moved & TicTacToeBitboard.FULL) != 0) {
+			int reply = this.replies.get(Integer.numberOfTrailingZeros(moved));
+			if (reply != NOT_READY) {
+				TicTacToeMetrics recording = this.controller.getMetrics();
+				if (recording != null) {
+					// the user waited only for the look up
+					TicTacToeController.recordDecision(recording, System.nanoTime() - start, next, reply);
+				}
+				return reply;
+			}
+		}
+		return this.controller.getAIDecision(next);
+	}
+
+	/**
+	 * @param cell cell the user may move on
+	 * @return true if the reply to that move is already known
+	 */
+	public boolean isReady(int cell) {
+		return this.replies.get(cell) != NOT_READY;
+	}
+
+	/**
+	 * This cancel() method stops the background thread and waits for it,
+	 * the replies found so far stay readable
+	 */
+	public void cancel() {
+		this.deadline.cancel();
+		boolean interrupted = false;
+		while (this.thread.isAlive()) {
+			try {
+				this.thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
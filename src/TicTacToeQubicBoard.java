@@ -0,0 +1,179 @@
+import java.util.Arrays;
+
+/**
+ *
+ * This class holds the bitboard representation of Qubic, tic-tac-toe
+ * on a 4x4x4 cube where 4 in a row wins. The 64 cells fit a long, so
+ * every player's pieces are one long and a line is a mask. Cell i is
+ * level i / 16, row (i / 4) % 4, column i % 4.
+ *
+ * There are 76 winning lines: 48 rows and columns inside the levels,
+ * 16 vertical lines through the levels, 8 diagonals of the levels,
+ * 8 diagonals of the vertical planes and 4 through the centre of the
+ * cube. Win and threat detection only test masks, so they never loop
+ * over cells.
+ *
+ */
+public final class TicTacToeQubicBoard {
+
+	public static final int SIZE = 4;
+	public static final int CELLS = 64;
+	public static final long FULL = -1L;
+	public static final long EMPTY = 0L;
+
+	/**
+	 * all 76 winning lines
+	 */
+	public static final long[] LINES;
+
+	// CELL_LINES[cell] = the indexes in LINES of the lines through the cell
+	private static final int[][] CELL_LINES = new int[CELLS][];
+
+	static {
+		// one direction of every line: the first non-zero step is positive
+		int[][] directions = new int[13][];
+		int count = 0;
+		for (int dl = -1; dl <= 1; ++dl) {
+			for (int dr = -1; dr <= 1; ++dr) {
+				for (int dc = -1; dc <= 1; ++dc) {
+					int first = dl != 0 ? dl : dr != 0 ? dr : dc;
+					if (first > 0) {
+						directions[count++] = new int[] {dl, dr, dc};
+					}
+				}
+			}
+		}
+		long[] lines = new long[CELLS * directions.length];
+		count = 0;
+		for (int cell = 0; cell < CELLS; ++cell) {
+			for (int[] d : directions) {
+				// a line starts at the cell if the cell before it is off the cube and the last one is on it
+				if (!inside(level(cell) - d[0], row(cell) - d[1], column(cell) - d[2])
+						&& inside(level(cell) + 3 * d[0], row(cell) + 3 * d[1], column(cell) + 3 * d[2])) {
+					long line = 0;
+					for (int i = 0; i < SIZE; ++i) {
+						line |= 1L << cell(level(cell) + i * d[0], row(cell) + i * d[1], column(cell) + i * d[2]);
+					}
+					lines[count++] = line;
+				}
+			}
+		}
+		LINES = Arrays.copyOf(lines, count);
+
+		for (int cell = 0; cell < CELLS; ++cell) {
+			int through = 0;
+			for (long line : LINES) {
+				if ((line & (1L << cell)) != 0) {
+					++through;
+				}
+			}
+			CELL_LINES[cell] = new int[through];
+			through = 0;
+			for (int i = 0; i < LINES.length; ++i) {
+				if ((LINES[i] & (1L << cell)) != 0) {
+					CELL_LINES[cell][through++] = i;
+				}
+			}
+		}
+	}
+
+	private TicTacToeQubicBoard() {
+	}
+
+	private static boolean inside(int level, int row, int col) {
+		return level >= 0 && level < SIZE && row >= 0 && row < SIZE && col >= 0 && col < SIZE;
+	}
+
+	/**
+	 * @param level level 0 - 3
+	 * @param row row 0 - 3
+	 * @param col column 0 - 3
+	 * @return the cell index
+	 */
+	public static int cell(int level, int row, int col) {
+		return level * SIZE * SIZE + row * SIZE + col;
+	}
+
+	public static int level(int cell) {
+		return cell / (SIZE * SIZE);
+	}
+
+	public static int row(int cell) {
+		return (cell / SIZE) % SIZE;
+	}
+
+	public static int column(int cell) {
+		return cell % SIZE;
+	}
+
+	/**
+	 * @param cell cell index
+	 * @return the indexes in LINES of the lines through the cell, 4 or 7 of them
+	 */
+	public static int[] getCellLines(int cell) {
+		return CELL_LINES[cell];
+	}
+
+	/**
+	 * @param user user's pieces
+	 * @param ai AI's pieces
+	 * @return the empty cells
+	 */
+	public static long emptyCells(long user, long ai) {
+		return ~(user | ai);
+	}
+
+	/**
+	 * This isWin() method checks every line against a player's pieces
+	 *
+	 * @param mask the player's pieces
+	 * @return true if the pieces fill a line
+	 */
+	public static boolean isWin(long mask) {
+		for (long line : LINES) {
+			if ((mask & line) == line) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This checkStateAfterMove() method is isWin() for the lines
+	 * through the cell that was just played
+	 *
+	 * @param cell cell that was just played
+	 * @param mask the pieces of the player who played it
+	 * @return true if the move won the game
+	 */
+	public static boolean checkStateAfterMove(int cell, long mask) {
+		for (int line : CELL_LINES[cell]) {
+			if ((mask & LINES[line]) == LINES[line]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This winCells() method finds every cell where a player wins by
+	 * moving there: the empty cell of a line where the player has 3
+	 * pieces and the opponent none. These are the player's threats.
+	 * The loop has no branches to mispredict: missing is the part of
+	 * the line the player does not have, and the line counts when that
+	 * is at most one cell and the opponent has none of it.
+	 *
+	 * @param mover pieces of the player who moves
+	 * @param other pieces of the opponent
+	 * @return the winning cells
+	 */
+	public static long winCells(long mover, long other) {
+		long cells = 0;
+		for (long line : LINES) {
+			long missing = line & ~mover;
+			long blocked = (missing & (missing - 1)) | (other & line);
+			cells |= blocked == 0 ? missing : 0;
+		}
+		return cells;
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ *
+ * this class implements the AI's logic for Qubic (see
+ * TicTacToeQubicBoard) with the same priorities as
+ * TicTacToeController: win if possible, defend if the user threatens
+ * to win, and otherwise search for the best move with
+ * TicTacToeQubicSearch. The checks work on the two bitboards, the
+ * user's (X) and the AI's (O), and do not loop over the 64 cells.
+ *
+ * Every thread gets its own search engine, so a controller can be
+ * shared by many threads.
+ *
+ */
+public class TicTacToeQubicController {
+
+	// time the AI thinks about a move when no deadline is given
+	public static final long DEFAULT_BUDGET_NANOS = 1000000000L;
+
+	private final ThreadLocal<TicTacToeQubicSearch> engines = new ThreadLocal<TicTacToeQubicSearch>() {
+		@Override
+		protected TicTacToeQubicSearch initialValue() {
+			return new TicTacToeQubicSearch();
+		}
+	};
+
+	/**
+	 * This getAIPosition() method decides the AI's move within
+	 * DEFAULT_BUDGET_NANOS
+	 *
+	 * @param user user's pieces
+	 * @param ai AI's pieces
+	 * @return the cell that AI will move, -1 if the board is full
+	 */
+	public int getAIPosition(long user, long ai) {
+		return this.getAIPosition(user, ai, TicTacToeDeadline.after(DEFAULT_BUDGET_NANOS));
+	}
+
+	/**
+	 * This getAIPosition() method picks the winning cell if there is
+	 * one, then the cell that must be defended, and otherwise the move
+	 * of the deepest search finished before the deadline. If not even
+	 * one ply was searched, selectBasedOnHeuristics() decides.
+	 *
+	 * @param user user's pieces
+	 * @param ai AI's pieces
+	 * @param deadline time budget of this move
+	 * @return the cell that AI will move, -1 if the board is full
+	 */
+	public int getAIPosition(long user, long ai, TicTacToeDeadline deadline) {
+		int win_move = this.existWinMove(user, ai);
+		if (win_move != -1) {
+			return win_move;
+		}
+		int defend_move = this.existMustDefend(user, ai, 2);
+		if (defend_move != -1) {
+			return defend_move;
+		}
+		int move = this.search(ai, user, deadline).getMove();
+		if (move != -1) {
+			return move;
+		}
+		return this.selectBasedOnHeuristics(ai, user);
+	}
+
+	/**
+	 * This search() method runs the search engine of this thread
+	 *
+	 * @param own pieces of the player to move
+	 * @param other pieces of the other player
+	 * @param deadline time budget, null for none
+	 * @return the decision of the engine, with its depth and node count
+	 */
+	public TicTacToeSearchEngine.Result search(long own, long other, TicTacToeDeadline deadline) {
+		return this.engines.get().search(own, other, deadline);
+	}
+
+	/**
+	 * This existWinMove() checks for AI whether there is a move
+	 * that wins right away
+	 *
+	 * @param user user's pieces
+	 * @param ai AI's pieces
+	 * @return the lowest winning cell, -1 if there is none
+	 */
+	public int existWinMove(long user, long ai) {
+		return lowestCell(TicTacToeQubicBoard.winCells(ai, user));
+	}
+
+	/**
+	 * this existMustDefend() method finds a cell that the player
+	 * must take now to prevent a loss at the next move
+	 *
+	 * @param user user's pieces
+	 * @param ai AI's pieces
+	 * @param player whose step is it now?
+	 * @return the lowest cell to defend, -1 if there is none
+	 */
+	public int existMustDefend(long user, long ai, int player) {
+		return lowestCell(player == 2 ? TicTacToeQubicBoard.winCells(user, ai) : TicTacToeQubicBoard.winCells(ai, user));
+	}
+
+	/**
+	 * This countWinMove() method counts the cells where the player
+	 * could win with the next move. More than one is a fork, only one
+	 * of them can be blocked.
+	 *
+	 * @param mover pieces of the player
+	 * @param other pieces of the opponent
+	 * @return the number of possible win moves
+	 */
+	public int countWinMove(long mover, long other) {
+		return Long.bitCount(TicTacToeQubicBoard.winCells(mover, other));
+	}
+
+	/**
+	 * This selectBasedOnHeuristics() method picks the empty cell with
+	 * the best TicTacToeQubicSearch.orderScore(), the first one in
+	 * cell order if they are the same
+	 *
+	 * @param own pieces of the player to move
+	 * @param other pieces of the other player
+	 * @return the selected cell, -1 if the board is full
+	 */
+	public int selectBasedOnHeuristics(long own, long other) {
+		int selectedCell = -1;
+		int maxScore = Integer.MIN_VALUE;
+		long empty = TicTacToeQubicBoard.emptyCells(own, other);
+		while (empty != 0) {
+			int cell = Long.numberOfTrailingZeros(empty);
+			empty &= empty - 1;
+			int score = TicTacToeQubicSearch.orderScore(own, other, cell);
+			if (score > maxScore) {
+				selectedCell = cell;
+				maxScore = score;
+			}
+		}
+		return selectedCell;
+	}
+
+	private static int lowestCell(long cells) {
+		return cells == 0 ? -1 : Long.numberOfTrailingZeros(cells);
+	}
+}
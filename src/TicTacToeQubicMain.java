@@ -0,0 +1,136 @@
+import java.util.Scanner;
+
+/**
+ *
+ * This class implements the game loop of Qubic, tic-tac-toe on a
+ * 4x4x4 cube, in the same way TicTacToeMain does for the classic
+ * board. The user enters a level, a row and a column, each 0 to 3,
+ * and the AI's logic comes from TicTacToeQubicController.
+ *
+ */
+public class TicTacToeQubicMain extends TicTacToeQubicController {
+
+	// 1 = x placed = user, 2 = o placed = computer
+	private long[] pieces = new long[3];
+	private TicTacToeView gameView = new TicTacToeView();
+	private final Scanner input = new Scanner(System.in);
+	private long budgetNanos = DEFAULT_BUDGET_NANOS;
+
+	/**
+	 * this startGame() method will determine who first move by asking
+	 * the user. After confirming the first move, it will then begin
+	 * the game
+	 */
+	public void startGame() {
+		System.out.println("Start Qubic (4x4x4, 4 in a row wins)");
+		int firstMove = this.determineFirstMove();
+		this.gameSteps(firstMove);
+	}
+
+	/**
+	 * This sets how long the AI thinks about each move
+	 *
+	 * @param budgetNanos time per move, in nanoseconds
+	 */
+	public void setBudget(long budgetNanos) {
+		this.budgetNanos = budgetNanos;
+	}
+
+	/**
+	 * This is the main method for playing the game. If it's user's
+	 * term, it will prompt for input and check whether the input is
+	 * valid. If it's AI's term, it will call the functions of
+	 * TicTacToeQubicController. The loop ends when either of user
+	 * or AI wins or the cube is full.
+	 *
+	 * @param firstMove who will make the first move as user has specified
+	 */
+	private void gameSteps(int firstMove) {
+		int turn = firstMove;
+		System.out.println("\nInitial Board");
+		this.printBoard();
+		while (TicTacToeQubicBoard.emptyCells(this.pieces[1], this.pieces[2]) != 0) {
+			int cell;
+			if (turn == 1) {
+				System.out.println("\nUser's turn");
+				cell = this.usersTerm();
+			} else {
+				System.out.println("\nAI's turn");
+				cell = this.getAIPosition(this.pieces[1], this.pieces[2], TicTacToeDeadline.after(this.budgetNanos));
+				System.out.println("AI moves to level " + TicTacToeQubicBoard.level(cell) + ", row "
+						+ TicTacToeQubicBoard.row(cell) + ", column " + TicTacToeQubicBoard.column(cell));
+			}
+			this.pieces[turn] |= 1L << cell;
+			this.printBoard();
+			if (TicTacToeQubicBoard.checkStateAfterMove(cell, this.pieces[turn])) {
+				System.out.println(turn == 1 ? "User has won!" : "AI has won!");
+				return;
+			}
+			turn = 3 - turn;
+		}
+		System.out.println("\nTie!");
+	}
+
+	private void printBoard() {
+		System.out.print(this.gameView.renderQubic(this.pieces[1], this.pieces[2]));
+	}
+
+	/**
+	 * this determineFirstMove() asks for user's input and picks
+	 * whether user moves first or AI moves first
+	 *
+	 * @return the player that has the first move
+	 */
+	private int determineFirstMove() {
+		System.out.print("Who moves first? (u : user, p : program): ");
+		String x = this.input.next().toLowerCase();
+		while (!x.equals("u") && !x.equals("p")) {
+			System.out.println("Error: Invalid Input (enter 'u' or 'p') ");
+			System.out.print("Who moves first? (u : user, p : program): ");
+			x = this.input.next().toLowerCase();
+		}
+		return x.equals("u") ? 1 : 2;
+	}
+
+	/**
+	 * This usersTerm() method asks for a level, a row and a column
+	 * until they are in range 0 - 3 and name an empty cell
+	 *
+	 * @return the cell where the user specified to move
+	 */
+	private int usersTerm() {
+		while (true) {
+			int level = this.promptUser("level");
+			int row = this.promptUser("row");
+			int col = this.promptUser("column");
+			int size = TicTacToeQubicBoard.SIZE;
+			if (level < 0 || level >= size || row < 0 || row >= size || col < 0 || col >= size) {
+				System.out.println("Error: Level, Row and Column specified should be in range 0 to 3");
+				continue;
+			}
+			int cell = TicTacToeQubicBoard.cell(level, row, col);
+			if (((this.pieces[1] | this.pieces[2]) & (1L << cell)) != 0) {
+				System.out.println("Error: Position specified is already occupied");
+				continue;
+			}
+			return cell;
+		}
+	}
+
+	/**
+	 * this promptUser() method asks for one coordinate of the user's
+	 * move and checks whether the input is an integer
+	 *
+	 * @param name name of the coordinate
+	 * @return the input number
+	 */
+	private int promptUser(String name) {
+		System.out.print("Enter the " + name + " to move: ");
+		while (!this.input.hasNextInt()) {
+			System.out.println("Error!: Input " + name + " must be an integer");
+			System.out.print("Enter the " + name + " to move: ");
+			this.input.next();
+		}
+		return this.input.nextInt();
+	}
+}
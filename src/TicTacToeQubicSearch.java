@@ -0,0 +1,418 @@
+import java.util.Random;
+
+/**
+ *
+ * This class searches for the best Qubic move with negamax and
+ * alpha-beta pruning on TicTacToeQubicBoard bitboards. Like
+ * TicTacToeSearchEngine it deepens one ply at a time, keeps a
+ * transposition table and can be given a TicTacToeDeadline, but a
+ * position is just two longs, the pieces of the player to move and of
+ * the other player, so playing a move is a single OR.
+ *
+ * Threats are handled before the search goes deeper, the way
+ * TicTacToeController puts existWinMove() and existMustDefend() before
+ * the heuristics: a player with a winning cell wins, a player facing
+ * two threats (a fork) loses, and a player facing one threat has only
+ * the move that blocks it. Forced moves do not use up depth, so the
+ * long forcing sequences of Qubic are followed to the end.
+ *
+ * An engine keeps its table between decisions, so it must only be
+ * used by one thread at a time.
+ *
+ */
+public class TicTacToeQubicSearch {
+
+	public static final int WIN_SCORE = TicTacToeSearchEngine.WIN_SCORE;
+	// scores above this are wins found by the search, not evaluations
+	private static final int WIN_THRESHOLD = WIN_SCORE - 10000;
+	private static final int INFINITY = WIN_SCORE + 1;
+
+	private static final int EXACT = 0;
+	private static final int LOWER_BOUND = 1;
+	private static final int UPPER_BOUND = 2;
+
+	// value of an open line with 0 - 3 pieces of one player
+	private static final int[] LINE_VALUES = {0, 1, 8, 64};
+
+	// positions searched between two looks at the deadline, a power of 2
+	private static final int CHECK_INTERVAL = 128;
+
+	private final int maxDepth;
+
+	// transposition table, a position is stored whole so there are no false hits
+	private final int tableMask;
+	private final long[] tableOwn;
+	private final long[] tableOther;
+	private final int[] tableScores;
+	private final byte[] tableMoves;
+	// depth in bits 0 - 7, bound in bits 8 - 9, generation in bits 10 and up
+	private final int[] tableInfo;
+	private int generation = 0;
+
+	// moves and their ordering scores, one row per ply so search does not allocate
+	private final int[][] moves = new int[TicTacToeQubicBoard.CELLS + 1][TicTacToeQubicBoard.CELLS];
+	private final int[][] orderScores = new int[TicTacToeQubicBoard.CELLS + 1][TicTacToeQubicBoard.CELLS];
+
+	private long nodes;
+	private int rootBestMove;
+	private TicTacToeDeadline deadline;
+	private boolean aborted;
+
+	/**
+	 * @param maxDepth deepest search in plies, forced moves not counted
+	 * @param tableBits the transposition table has 2^tableBits entries
+	 */
+	public TicTacToeQubicSearch(int maxDepth, int tableBits) {
+		this.maxDepth = Math.min(maxDepth, TicTacToeQubicBoard.CELLS);
+		int size = 1 << tableBits;
+		this.tableMask = size - 1;
+		this.tableOwn = new long[size];
+		this.tableOther = new long[size];
+		this.tableScores = new int[size];
+		this.tableMoves = new byte[size];
+		this.tableInfo = new int[size];
+	}
+
+	/**
+	 * This engine searches as deep as the deadline allows, with a
+	 * table of 2^20 entries
+	 */
+	public TicTacToeQubicSearch() {
+		this(TicTacToeQubicBoard.CELLS, 20);
+	}
+
+	/**
+	 * This search() method finds the best move for the player to move
+	 *
+	 * @param own pieces of the player to move
+	 * @param other pieces of the other player
+	 * @param deadline time budget, null for none
+	 * @return the decision, its move is -1 if the game was over or not
+	 * even depth 1 was completed
+	 */
+	public TicTacToeSearchEngine.Result search(long own, long other, TicTacToeDeadline deadline) {
+		long start = System.nanoTime();
+		this.deadline = deadline;
+		this.aborted = deadline != null && deadline.isExpired();
+		this.nodes = 0;
+		this.generation = (this.generation + 1) & 0x3FFFFF;
+		if (TicTacToeQubicBoard.isWin(own) || TicTacToeQubicBoard.isWin(other)
+				|| TicTacToeQubicBoard.emptyCells(own, other) == 0) {
+			return new TicTacToeSearchEngine.Result(-1, 0, 0, 0, System.nanoTime() - start, false);
+		}
+
+		int bestMove = -1;
+		int bestScore = 0;
+		int completedDepth = 0;
+		int empty = Long.bitCount(TicTacToeQubicBoard.emptyCells(own, other));
+		for (int depth = 1; depth <= this.maxDepth && !this.aborted; ++depth) {
+			int score = this.negamax(own, other, depth, -INFINITY, INFINITY, 0);
+			if (this.aborted) {
+				// this depth was not finished, keep the previous one
+				break;
+			}
+			bestMove = this.rootBestMove;
+			bestScore = score;
+			completedDepth = depth;
+			if (Math.abs(score) >= WIN_THRESHOLD || depth >= empty) {
+				// the result is proven, deeper searches cannot change it
+				break;
+			}
+		}
+		boolean timedOut = this.aborted;
+		this.deadline = null;
+		this.aborted = false;
+		return new TicTacToeSearchEngine.Result(bestMove, bestScore, completedDepth, this.nodes,
+				System.nanoTime() - start, timedOut);
+	}
+
+	private int negamax(long own, long other, int depth, int alpha, int beta, int ply) {
+		if ((++this.nodes & (CHECK_INTERVAL - 1)) == 0 && this.deadline != null && this.deadline.isExpired()) {
+			this.aborted = true;
+		}
+		if (this.aborted) {
+			// the score is thrown away, just leave the search quickly
+			return 0;
+		}
+		long empty = TicTacToeQubicBoard.emptyCells(own, other);
+		if (empty == 0) {
+			return 0;
+		}
+		long wins = TicTacToeQubicBoard.winCells(own, other);
+		if (wins != 0) {
+			if (ply == 0) {
+				this.rootBestMove = Long.numberOfTrailingZeros(wins);
+			}
+			return WIN_SCORE - ply - 1;
+		}
+		long threats = TicTacToeQubicBoard.winCells(other, own);
+		if (Long.bitCount(threats) > 1) {
+			// only one can be blocked
+			if (ply == 0) {
+				this.rootBestMove = Long.numberOfTrailingZeros(threats);
+			}
+			return -(WIN_SCORE - ply - 2);
+		}
+		if (threats != 0) {
+			int cell = Long.numberOfTrailingZeros(threats);
+			if (ply == 0) {
+				this.rootBestMove = cell;
+			}
+			return -this.negamax(other, own | (1L << cell), depth, -beta, -alpha, ply + 1);
+		}
+		if (depth == 0) {
+			return evaluate(own, other);
+		}
+
+		int alphaOriginal = alpha;
+		int slot = (int) hash(own, other) & this.tableMask;
+		int tableMove = -1;
+		if (this.tableInfo[slot] != 0 && this.tableOwn[slot] == own && this.tableOther[slot] == other) {
+			tableMove = this.tableMoves[slot];
+			int info = this.tableInfo[slot];
+			// the root always searches, so its best move is known
+			if (ply > 0 && (info & 0xFF) >= depth) {
+				int score = fromTable(this.tableScores[slot], ply);
+				int bound = (info >>> 8) & 0x03;
+				if (bound == EXACT) {
+					return score;
+				} else if (bound == LOWER_BOUND && score > alpha) {
+					alpha = score;
+				} else if (bound == UPPER_BOUND && score < beta) {
+					beta = score;
+				}
+				if (alpha >= beta) {
+					return score;
+				}
+			}
+		}
+
+		int count = this.generateMoves(own, other, empty, ply, tableMove);
+		int[] plyMoves = this.moves[ply];
+		int best = -INFINITY;
+		int bestMove = plyMoves[0];
+		for (int i = 0; i < count; ++i) {
+			int cell = plyMoves[i];
+			int score = -this.negamax(other, own | (1L << cell), depth - 1, -beta, -alpha, ply + 1);
+			if (this.aborted) {
+				// do not store a half searched result in the table
+				return 0;
+			}
+			if (score > best) {
+				best = score;
+				bestMove = cell;
+				if (best > alpha) {
+					alpha = best;
+				}
+				if (alpha >= beta) {
+					break;
+				}
+			}
+		}
+
+		int bound = best <= alphaOriginal ? UPPER_BOUND : best >= beta ? LOWER_BOUND : EXACT;
+		int storedDepth = this.tableInfo[slot] & 0xFF;
+		int storedGeneration = this.tableInfo[slot] >>> 10;
+		if (this.tableInfo[slot] == 0 || storedGeneration != this.generation
+				|| depth >= storedDepth) {
+			this.tableOwn[slot] = own;
+			this.tableOther[slot] = other;
+			this.tableScores[slot] = toTable(best, ply);
+			this.tableMoves[slot] = (byte) bestMove;
+			this.tableInfo[slot] = depth | (bound << 8) | (this.generation << 10);
+		}
+		if (ply == 0) {
+			this.rootBestMove = bestMove;
+		}
+		return best;
+	}
+
+	/**
+	 * Win scores depend on the ply they are found at, the table keeps
+	 * them relative to the position instead.
+	 */
+	private static int toTable(int score, int ply) {
+		if (score >= WIN_THRESHOLD) {
+			return score + ply;
+		} else if (score <= -WIN_THRESHOLD) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	private static int fromTable(int score, int ply) {
+		if (score >= WIN_THRESHOLD) {
+			return score - ply;
+		} else if (score <= -WIN_THRESHOLD) {
+			return score + ply;
+		}
+		return score;
+	}
+
+	private static long hash(long own, long other) {
+		long z = own * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(other * 0xC2B2AE3D27D4EB4FL, 31);
+		return z ^ (z >>> 29);
+	}
+
+	/**
+	 * Fills moves[ply] with the empty cells, best first
+	 *
+	 * @return number of moves
+	 */
+	private int generateMoves(long own, long other, long empty, int ply, int tableMove) {
+		int[] plyMoves = this.moves[ply];
+		int[] scores = this.orderScores[ply];
+		int count = 0;
+		while (empty != 0) {
+			int cell = Long.numberOfTrailingZeros(empty);
+			empty &= empty - 1;
+			int score = cell == tableMove ? Integer.MAX_VALUE : orderScore(own, other, cell);
+			// insertion sort
+			int i = count++;
+			while (i > 0 && scores[i - 1] < score) {
+				scores[i] = scores[i - 1];
+				plyMoves[i] = plyMoves[i - 1];
+				--i;
+			}
+			scores[i] = score;
+			plyMoves[i] = cell;
+		}
+		return count;
+	}
+
+	/**
+	 * This orderScore() method is the attack heuristic of
+	 * TicTacToeSearchEngine on the cube: every line through the cell
+	 * that the opponent has not blocked counts, more if the player
+	 * already has pieces on it, and lines the opponent is building
+	 * on count as defence. Making a threat counts the most.
+	 *
+	 * @param own pieces of the player to move
+	 * @param other pieces of the other player
+	 * @param cell empty cell
+	 * @return the score, higher is better
+	 */
+	public static int orderScore(long own, long other, int cell) {
+		int score = 0;
+		for (int line : TicTacToeQubicBoard.getCellLines(cell)) {
+			long mask = TicTacToeQubicBoard.LINES[line];
+			int mine = Long.bitCount(own & mask);
+			int theirs = Long.bitCount(other & mask);
+			if (theirs == 0) {
+				score += mine == 2 ? 1 << 12 : 1 + mine * mine * 4;
+			} else if (mine == 0) {
+				score += theirs * theirs * 3;
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * This evaluate() method scores a position for the player to move
+	 * by its open lines: LINE_VALUES of the pieces on every line with
+	 * only one player's pieces, for that player.
+	 *
+	 * @param own pieces of the player to move
+	 * @param other pieces of the other player
+	 * @return the score, higher is better for the player to move
+	 */
+	public static int evaluate(long own, long other) {
+		int score = 0;
+		for (long line : TicTacToeQubicBoard.LINES) {
+			long mine = own & line;
+			long theirs = other & line;
+			if (theirs == 0) {
+				score += LINE_VALUES[Long.bitCount(mine)];
+			} else if (mine == 0) {
+				score -= LINE_VALUES[Long.bitCount(theirs)];
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Plays games of the search against itself with a fixed time per
+	 * move and reports how fast it decides and how many positions it
+	 * searches, then how fast win and threat detection run.
+	 *
+	 * @param args milliseconds per move (default 100), number of games (default 4)
+	 */
+	public static void main(String[] args) {
+		long budget = (args.length > 0 ? Long.parseLong(args[0]) : 100L) * 1000000L;
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		TicTacToeQubicController controller = new TicTacToeQubicController();
+		long moves = 0;
+		long nodes = 0;
+		long depths = 0;
+		long elapsed = 0;
+		int[] results = new int[3];
+		for (int game = 0; game < games; ++game) {
+			long[] pieces = new long[3];
+			int player = game % 2 == 0 ? 1 : 2;
+			// a different first move every game, so the games are not all the same
+			int cell = (game * 37 + 5) % TicTacToeQubicBoard.CELLS;
+			int winner = 0;
+			while (true) {
+				pieces[player] |= 1L << cell;
+				if (TicTacToeQubicBoard.checkStateAfterMove(cell, pieces[player])) {
+					winner = player;
+					break;
+				}
+				if (TicTacToeQubicBoard.emptyCells(pieces[1], pieces[2]) == 0) {
+					break;
+				}
+				player = 3 - player;
+				TicTacToeSearchEngine.Result result = controller.search(pieces[player], pieces[3 - player],
+						TicTacToeDeadline.after(budget));
+				cell = result.getMove();
+				if (cell == -1) {
+					cell = controller.selectBasedOnHeuristics(pieces[player], pieces[3 - player]);
+				}
+				++moves;
+				nodes += result.getNodes();
+				depths += result.getDepth();
+				elapsed += result.getElapsedNanos();
+			}
+			++results[winner];
+		}
+		double seconds = elapsed / 1e9;
+		System.out.printf("%d games, %d searched moves in %.2f s: %.1f moves/sec, %.0f nodes/sec, average depth %.1f%n",
+				games, moves, seconds, moves / seconds, nodes / seconds, (double) depths / moves);
+		System.out.println("First player wins: " + results[1] + ", second player wins: "
+				+ results[2] + ", draws: " + results[0]);
+
+		// raw speed of the bitboard operations, on the positions of a random game
+		Random random = new Random(1);
+		long[][] positions = new long[1024][2];
+		for (int i = 0; i < positions.length; ++i) {
+			long user = 0;
+			long ai = 0;
+			int filled = random.nextInt(40);
+			for (int j = 0; j < filled; ++j) {
+				int free = random.nextInt(TicTacToeQubicBoard.CELLS);
+				if (((user | ai) & (1L << free)) == 0) {
+					if (j % 2 == 0) {
+						user |= 1L << free;
+					} else {
+						ai |= 1L << free;
+					}
+				}
+			}
+			positions[i][0] = user;
+			positions[i][1] = ai;
+		}
+		long sink = 0;
+		int rounds = 2000;
+		long start = System.nanoTime();
+		for (int round = 0; round < rounds; ++round) {
+			for (long[] position : positions) {
+				sink += TicTacToeQubicBoard.winCells(position[0], position[1]);
+			}
+		}
+		double perCall = (System.nanoTime() - start) / (double) (rounds * positions.length);
+		System.out.printf("winCells(): %.1f ns/position (%.0f positions/sec)%n", perCall, 1e9 / perCall);
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+}
@@ -0,0 +1,20 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 
+ * This strategy moves to a random empty cell. It uses the random
+ * generator of the calling thread, so it can be shared between threads.
+ *
+ */
+public class TicTacToeRandomStrategy implements TicTacToeStrategy {
+	
+	@Override
+	public int selectMove(int packed) {
+		int empty = TicTacToeBitboard.emptyCells(packed);
+		int skip = ThreadLocalRandom.current().nextInt(Integer.bitCount(empty));
+		for (int i = 0; i < skip; ++i) {
+			empty &= empty - 1;
+		}
+		return Integer.numberOfTrailingZeros(empty);
+	}
+}
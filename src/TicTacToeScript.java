@@ -0,0 +1,206 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ *
+ * This class replays scripted games without the console, for example
+ * to run a regression corpus through the AI. The script is read
+ * through one buffered reader, one game per line:
+ * <pre>
+ * # comment
+ * u 1 1 0 0 2 2      the user moves first and plays (1,1), (0,0), (2,2)
+ * p 0 2 2 0          the AI moves first, the user plays (0,2), (2,0)
+ * </pre>
+ * Only the user's moves are in the script, the AI answers them with
+ * the rules of TicTacToeSession, which are those of
+ * TicTacToeMain.gameSteps(). Every game writes one line, "status
+ * board" like a TicTacToeServer reply, or "ERROR line message" if a
+ * move was invalid or the game was over before the moves were. A
+ * game that runs out of moves is reported as PLAYING.
+ *
+ */
+public class TicTacToeScript {
+
+	private final TicTacToeSession session;
+	private final StringBuilder line = new StringBuilder(32);
+
+	/**
+	 * @param controller controller that decides the AI's moves
+	 */
+	public TicTacToeScript(TicTacToeController controller) {
+		this.session = new TicTacToeSession(controller);
+	}
+
+	/**
+	 * This run() method plays every game of a script
+	 *
+	 * @param in the script, it is read to the end but not closed
+	 * @param out where the result of each game is written
+	 * @return how the games ended
+	 * @throws IOException if in cannot be read or out cannot be written
+	 */
+	public Result run(Reader in, Appendable out) throws IOException {
+		BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+		Result result = new Result();
+		long lineNumber = 0;
+		String text;
+		while ((text = reader.readLine()) != null) {
+			++lineNumber;
+			String error = this.play(text);
+			if (error == null) {
+				continue;
+			}
+			StringBuilder reply = this.line;
+			reply.setLength(0);
+			if (error.isEmpty()) {
+				++result.counts[this.session.getStatus()];
+				reply.append(TicTacToeSession.statusName(this.session.getStatus())).append(' ');
+				TicTacToeView.appendCells(this.session.getPacked(), reply);
+			} else {
+				++result.errors;
+				reply.append("ERROR ").append(lineNumber).append(' ').append(error);
+			}
+			out.append(reply).append('\n');
+		}
+		return result;
+	}
+
+	/**
+	 * Plays the game of one line
+	 *
+	 * @return null for a blank or comment line, "" if the game was
+	 * played, else the error message
+	 */
+	private String play(String text) {
+		int length = text.length();
+		int i = skipSpaces(text, 0);
+		if (i == length || text.charAt(i) == '#') {
+			return null;
+		}
+		char first = Character.toLowerCase(text.charAt(i++));
+		if ((first != 'u' && first != 'p') || (i < length && !Character.isWhitespace(text.charAt(i)))) {
+			return "Error: Invalid Input (enter 'u' or 'p')";
+		}
+		this.session.start(first == 'u' ? 1 : 2);
+		int row = -1;
+		while ((i = skipSpaces(text, i)) < length) {
+			int value = 0;
+			int start = i;
+			while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9' && i - start < 9) {
+				value = value * 10 + (text.charAt(i++) - '0');
+			}
+			if (i == start || (i < length && !Character.isWhitespace(text.charAt(i)))) {
+				return "Error!: Input row and column must be integers";
+			}
+			if (row == -1) {
+				row = value;
+				continue;
+			}
+			String error = this.session.userMove(row, value);
+			if (error != null) {
+				return error;
+			}
+			row = -1;
+		}
+		if (row != -1) {
+			return "Error: Column of the last move is missing";
+		}
+		return "";
+	}
+
+	private static int skipSpaces(String text, int i) {
+		while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+			++i;
+		}
+		return i;
+	}
+
+	/**
+	 *
+	 * How the games of a script ended
+	 *
+	 */
+	public static class Result {
+
+		private final long[] counts = new long[4];
+		private long errors;
+
+		public long getGames() {
+			return this.counts[TicTacToeSession.PLAYING] + this.counts[TicTacToeSession.USER_WON]
+					+ this.counts[TicTacToeSession.AI_WON] + this.counts[TicTacToeSession.TIE] + this.errors;
+		}
+
+		/**
+		 * @param status PLAYING, USER_WON, AI_WON or TIE of TicTacToeSession
+		 * @return number of games that ended with it
+		 */
+		public long getCount(int status) {
+			return this.counts[status];
+		}
+
+		/**
+		 * @return number of lines with an invalid game
+		 */
+		public long getErrors() {
+			return this.errors;
+		}
+
+		@Override
+		public String toString() {
+			return this.getGames() + " games: user wins " + this.counts[TicTacToeSession.USER_WON]
+					+ ", AI wins " + this.counts[TicTacToeSession.AI_WON]
+					+ ", ties " + this.counts[TicTacToeSession.TIE]
+					+ ", unfinished " + this.counts[TicTacToeSession.PLAYING]
+					+ ", errors " + this.errors;
+		}
+	}
+
+	/**
+	 * Plays a script with the heuristic AI and writes the results to
+	 * standard output, the summary goes to standard error.
+	 *
+	 * @param args script file, standard input if missing or "-"
+	 * @throws IOException if the script cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		String file = args.length > 0 ? args[0] : "-";
+		replay(new TicTacToeController(), file);
+	}
+
+	/**
+	 * This replay() method plays a script file with the given controller,
+	 * the results go to standard output and the summary to standard error
+	 *
+	 * @param controller controller that decides the AI's moves
+	 * @param file script file, "-" for standard input
+	 * @return how the games ended
+	 * @throws IOException if the script cannot be read
+	 */
+	public static Result replay(TicTacToeController controller, String file) throws IOException {
+		Reader in = file.equals("-")
+				? new InputStreamReader(System.in, StandardCharsets.US_ASCII)
+				: Files.newBufferedReader(Paths.get(file), StandardCharsets.US_ASCII);
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16);
+		long start = System.nanoTime();
+		Result result;
+		try {
+			result = new TicTacToeScript(controller).run(in, out);
+		} finally {
+			out.flush();
+			if (!file.equals("-")) {
+				in.close();
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("%s in %.3f s (%.0f games/sec)%n", result, seconds, result.getGames() / seconds);
+		return result;
+	}
+}
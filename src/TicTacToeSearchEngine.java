@@ -0,0 +1,482 @@
+import java.util.Random;
+
+/**
+ *
+ * This class searches for the best move on a TicTacToeGeneralBoard
+ * with negamax and alpha-beta pruning. It deepens one ply at a time
+ * (iterative deepening) and tries the best move of the previous depth
+ * first. The other moves are ordered by the same ideas as the
+ * heuristic AI: on the classic board the scores come straight from
+ * TicTacToeController.userWillDefend() (lowest risk first) and
+ * calculateAttackHeuristic() (highest attack first). On larger boards
+ * the attack heuristic is generalized to every line through the cell.
+ *
+ * Positions already searched are kept in a transposition table keyed
+ * by a Zobrist hash. The table has a fixed size and a new entry only
+ * replaces an old one that was searched less deeply, or one left
+ * from an earlier decision.
+ *
+ * A search can be given a TicTacToeDeadline. The deadline is checked
+ * every CHECK_INTERVAL positions, and when it expires the depth being
+ * searched is dropped and the best move of the last completed depth
+ * is returned.
+ *
+ * An engine keeps its table between decisions, so it must only be
+ * used by one thread at a time.
+ *
+ */
+public class TicTacToeSearchEngine {
+
+	public static final int WIN_SCORE = 1000000;
+	// scores above this are wins found by the search, not evaluations
+	private static final int WIN_THRESHOLD = WIN_SCORE - 10000;
+	private static final int INFINITY = WIN_SCORE + 1;
+
+	private static final int EXACT = 0;
+	private static final int LOWER_BOUND = 1;
+	private static final int UPPER_BOUND = 2;
+
+	// large boards only search empty cells this close to a piece
+	private static final int NEIGHBOURHOOD = 2;
+	private static final int SMALL_BOARD = 25;
+
+	// positions searched between two looks at the deadline, a power of 2
+	private static final int CHECK_INTERVAL = 128;
+
+	private final TicTacToeGeometry geometry;
+	private final int maxDepth;
+	private final TicTacToeController controller = new TicTacToeController();
+
+	// zobrist[player][cell], plus a key for the side to move
+	private final long[][] zobrist;
+	private final long sideKey;
+
+	// transposition table
+	private final int tableMask;
+	private final long[] tableKeys;
+	private final int[] tableScores;
+	private final int[] tableMoves;
+	// depth in bits 0 - 7, bound in bits 8 - 9, generation in bits 10 and up
+	private final int[] tableInfo;
+	private int generation = 0;
+
+	// moves and their ordering scores, one row per ply so search does not allocate
+	private final int[][] moves;
+	private final int[][] orderScores;
+
+	private long nodes;
+	private long hash;
+	private int rootBestMove;
+	private TicTacToeDeadline deadline;
+	private boolean aborted;
+
+	/**
+	 * @param geometry board the engine plays on
+	 * @param maxDepth deepest search in plies
+	 * @param tableBits the transposition table has 2^tableBits entries
+	 */
+	public TicTacToeSearchEngine(TicTacToeGeometry geometry, int maxDepth, int tableBits) {
+		this.geometry = geometry;
+		this.maxDepth = Math.min(maxDepth, geometry.getCells());
+		int cells = geometry.getCells();
+
+		Random random = new Random(cells * 31L + geometry.getK());
+		this.zobrist = new long[3][cells];
+		for (int player = 1; player <= 2; ++player) {
+			for (int cell = 0; cell < cells; ++cell) {
+				this.zobrist[player][cell] = random.nextLong();
+			}
+		}
+		this.sideKey = random.nextLong();
+
+		int size = 1 << tableBits;
+		this.tableMask = size - 1;
+		this.tableKeys = new long[size];
+		this.tableScores = new int[size];
+		this.tableMoves = new int[size];
+		this.tableInfo = new int[size];
+
+		this.moves = new int[this.maxDepth + 1][cells];
+		this.orderScores = new int[this.maxDepth + 1][cells];
+	}
+
+	/**
+	 * This engine searches the classic 3x3 board to the end
+	 */
+	public TicTacToeSearchEngine() {
+		this(TicTacToeGeometry.CLASSIC, 9, 14);
+	}
+
+	/**
+	 *
+	 * The outcome of one decision: the move, its score, how deep
+	 * the search went and how many positions it visited.
+	 *
+	 */
+	public static class Result {
+		private final int move;
+		private final int score;
+		private final int depth;
+		private final long nodes;
+		private final long elapsedNanos;
+		private final boolean timedOut;
+
+		Result(int move, int score, int depth, long nodes, long elapsedNanos, boolean timedOut) {
+			this.move = move;
+			this.score = score;
+			this.depth = depth;
+			this.nodes = nodes;
+			this.elapsedNanos = elapsedNanos;
+			this.timedOut = timedOut;
+		}
+
+		/**
+		 * @return the cell to move, -1 if the game was already over or
+		 * the deadline expired before the first depth was searched
+		 */
+		public int getMove() {
+			return this.move;
+		}
+
+		/**
+		 * @return the score for the player to move, WIN_SCORE minus the number of plies for a forced win
+		 */
+		public int getScore() {
+			return this.score;
+		}
+
+		/**
+		 * @return the deepest completed search, in plies
+		 */
+		public int getDepth() {
+			return this.depth;
+		}
+
+		/**
+		 * @return number of positions visited
+		 */
+		public long getNodes() {
+			return this.nodes;
+		}
+
+		public long getElapsedNanos() {
+			return this.elapsedNanos;
+		}
+
+		/**
+		 * @return true if the deadline stopped the search before it was done
+		 */
+		public boolean isTimedOut() {
+			return this.timedOut;
+		}
+
+		/**
+		 * @return positions visited per second
+		 */
+		public double getNodesPerSecond() {
+			return this.elapsedNanos == 0 ? 0 : this.nodes * 1e9 / this.elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("move %d score %d depth %d nodes %d (%.0f nodes/sec)%s",
+					this.move, this.score, this.depth, this.nodes, this.getNodesPerSecond(),
+					this.timedOut ? " timed out" : "");
+		}
+	}
+
+	/**
+	 * This search() method finds the best move for the player to move.
+	 * The board is played on during the search and is back in the
+	 * same state when the method returns.
+	 *
+	 * @param board game board, must use the geometry of this engine
+	 * @param player the player to move
+	 * @return the decision
+	 */
+	public Result search(TicTacToeGeneralBoard board, int player) {
+		return this.search(board, player, null);
+	}
+
+	/**
+	 * This search() method is search() with a time budget. When the
+	 * deadline expires the search stops within CHECK_INTERVAL positions
+	 * and returns the best move of the deepest completed depth.
+	 *
+	 * @param board game board, must use the geometry of this engine
+	 * @param player the player to move
+	 * @param deadline time budget, null for none
+	 * @return the decision, its move is -1 if not even depth 1 was completed
+	 */
+	public Result search(TicTacToeGeneralBoard board, int player, TicTacToeDeadline deadline) {
+		long start = System.nanoTime();
+		this.deadline = deadline;
+		this.aborted = deadline != null && deadline.isExpired();
+		this.nodes = 0;
+		this.generation = (this.generation + 1) & 0x3FFFFF;
+		this.hash = this.hashOf(board);
+		if (board.isOver()) {
+			return new Result(-1, 0, 0, 0, System.nanoTime() - start, false);
+		}
+
+		int bestMove = -1;
+		int bestScore = 0;
+		int completedDepth = 0;
+		for (int depth = 1; depth <= this.maxDepth && !this.aborted; ++depth) {
+			int score = this.negamax(board, depth, -INFINITY, INFINITY, player, 0);
+			if (this.aborted) {
+				// this depth was not finished, keep the previous one
+				break;
+			}
+			bestMove = this.rootBestMove;
+			bestScore = score;
+			completedDepth = depth;
+			if (Math.abs(score) >= WIN_THRESHOLD || depth >= this.geometry.getCells() - board.getMoveCount()) {
+				// the result is proven, deeper searches cannot change it
+				break;
+			}
+		}
+		boolean timedOut = this.aborted;
+		this.deadline = null;
+		this.aborted = false;
+		return new Result(bestMove, bestScore, completedDepth, this.nodes, System.nanoTime() - start, timedOut);
+	}
+
+	private int negamax(TicTacToeGeneralBoard board, int depth, int alpha, int beta, int player, int ply) {
+		if ((++this.nodes & (CHECK_INTERVAL - 1)) == 0 && this.deadline != null && this.deadline.isExpired()) {
+			this.aborted = true;
+		}
+		if (this.aborted) {
+			// the score is thrown away, just leave the search quickly
+			return 0;
+		}
+		if (board.getWinner() != 0) {
+			// only the player who just moved can have won
+			return -(WIN_SCORE - ply);
+		}
+		if (board.isFull()) {
+			return 0;
+		}
+		if (depth == 0) {
+			return this.evaluate(board, player);
+		}
+
+		int alphaOriginal = alpha;
+		long key = this.hash ^ (player == 2 ? this.sideKey : 0);
+		int slot = (int) key & this.tableMask;
+		int tableMove = -1;
+		if (this.tableKeys[slot] == key) {
+			tableMove = this.tableMoves[slot];
+			int info = this.tableInfo[slot];
+			// the root always searches, so its best move is known
+			if (ply > 0 && (info & 0xFF) >= depth) {
+				int score = fromTable(this.tableScores[slot], ply);
+				int bound = (info >>> 8) & 0x03;
+				if (bound == EXACT) {
+					return score;
+				} else if (bound == LOWER_BOUND && score > alpha) {
+					alpha = score;
+				} else if (bound == UPPER_BOUND && score < beta) {
+					beta = score;
+				}
+				if (alpha >= beta) {
+					return score;
+				}
+			}
+		}
+
+		int count = this.generateMoves(board, player, ply, tableMove);
+		int[] plyMoves = this.moves[ply];
+		int best = -INFINITY;
+		int bestMove = plyMoves[0];
+		for (int i = 0; i < count; ++i) {
+			int cell = plyMoves[i];
+			board.apply(cell, player);
+			this.hash ^= this.zobrist[player][cell];
+			int score = -this.negamax(board, depth - 1, -beta, -alpha, 3 - player, ply + 1);
+			this.hash ^= this.zobrist[player][cell];
+			board.undo();
+			if (this.aborted) {
+				// do not store a half searched result in the table
+				return 0;
+			}
+			if (score > best) {
+				best = score;
+				bestMove = cell;
+				if (best > alpha) {
+					alpha = best;
+				}
+				if (alpha >= beta) {
+					break;
+				}
+			}
+		}
+
+		int bound = best <= alphaOriginal ? UPPER_BOUND : best >= beta ? LOWER_BOUND : EXACT;
+		int storedDepth = this.tableInfo[slot] & 0xFF;
+		int storedGeneration = this.tableInfo[slot] >>> 10;
+		if (this.tableKeys[slot] == 0 || storedGeneration != this.generation || depth >= storedDepth) {
+			this.tableKeys[slot] = key;
+			this.tableScores[slot] = toTable(best, ply);
+			this.tableMoves[slot] = bestMove;
+			this.tableInfo[slot] = depth | (bound << 8) | (this.generation << 10);
+		}
+		if (ply == 0) {
+			this.rootBestMove = bestMove;
+		}
+		return best;
+	}
+
+	/**
+	 * Win scores depend on the ply they are found at, the table keeps
+	 * them relative to the position instead.
+	 */
+	private static int toTable(int score, int ply) {
+		if (score >= WIN_THRESHOLD) {
+			return score + ply;
+		} else if (score <= -WIN_THRESHOLD) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	private static int fromTable(int score, int ply) {
+		if (score >= WIN_THRESHOLD) {
+			return score - ply;
+		} else if (score <= -WIN_THRESHOLD) {
+			return score + ply;
+		}
+		return score;
+	}
+
+	/**
+	 * Fills moves[ply] with the candidate moves, best first
+	 *
+	 * @return number of moves
+	 */
+	private int generateMoves(TicTacToeGeneralBoard board, int player, int ply, int tableMove) {
+		boolean nearOnly = this.geometry.getCells() > SMALL_BOARD && board.getMoveCount() > 0;
+		int count = this.generateMoves(board, player, ply, tableMove, nearOnly);
+		if (count == 0 && nearOnly) {
+			// every cell near a piece is taken
+			count = this.generateMoves(board, player, ply, tableMove, false);
+		}
+		return count;
+	}
+
+	private int generateMoves(TicTacToeGeneralBoard board, int player, int ply, int tableMove, boolean nearOnly) {
+		int[] plyMoves = this.moves[ply];
+		int[] scores = this.orderScores[ply];
+		int cells = this.geometry.getCells();
+		int count = 0;
+		int packed = cells == TicTacToeBitboard.CELLS && this.geometry.getK() == 3 ? this.packedFor(board, player) : -1;
+		for (int cell = 0; cell < cells; ++cell) {
+			if (board.get(cell) != 0 || (nearOnly && !board.hasPieceNear(cell, NEIGHBOURHOOD))) {
+				continue;
+			}
+			int score;
+			if (cell == tableMove) {
+				score = Integer.MAX_VALUE;
+			} else if (packed != -1) {
+				score = this.classicOrderScore(packed, cell);
+			} else {
+				score = this.orderScore(board, player, cell);
+			}
+			// insertion sort, the lists are short
+			int i = count++;
+			while (i > 0 && scores[i - 1] < score) {
+				scores[i] = scores[i - 1];
+				plyMoves[i] = plyMoves[i - 1];
+				--i;
+			}
+			scores[i] = score;
+			plyMoves[i] = cell;
+		}
+		return count;
+	}
+
+	/**
+	 * The packed board as seen by the player to move, who plays as the AI (2)
+	 */
+	private int packedFor(TicTacToeGeneralBoard board, int player) {
+		int packed = TicTacToeBitboard.EMPTY;
+		for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+			int owner = board.get(cell);
+			if (owner != 0) {
+				packed = TicTacToeBitboard.place(packed, cell, owner == player ? 2 : 1);
+			}
+		}
+		return packed;
+	}
+
+	/**
+	 * The ordering of gameModelComparator: lowest userWillDefend() risk
+	 * first, then highest calculateAttackHeuristic()
+	 */
+	private int classicOrderScore(int packed, int cell) {
+		int trial = TicTacToeBitboard.place(packed, cell, 2);
+		if (this.controller.checkStateAfterMove(cell, trial)) {
+			return Integer.MAX_VALUE - 1;
+		}
+		int risk = this.controller.userWillDefend(trial);
+		return -risk * 16 + this.controller.calculateAttackHeuristic(cell, trial);
+	}
+
+	/**
+	 * The attack heuristic on any board: every line through the cell
+	 * that the opponent has not blocked counts, more if the player
+	 * already has pieces on it. Lines the opponent is building on
+	 * count as defence.
+	 */
+	private int orderScore(TicTacToeGeneralBoard board, int player, int cell) {
+		int k = this.geometry.getK();
+		int score = 0;
+		for (int line : this.geometry.getCellLines(cell)) {
+			int own = board.getLineCount(player, line);
+			int other = board.getLineCount(3 - player, line);
+			if (other == 0) {
+				score += own == k - 1 ? 1 << 24 : 1 + own * own * 4;
+			} else if (own == 0) {
+				score += other == k - 1 ? 1 << 20 : other * other * 3;
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Scores a position for the player to move by its open lines: a
+	 * line with only one player's pieces is worth 4^pieces to that player.
+	 */
+	private int evaluate(TicTacToeGeneralBoard board, int player) {
+		int score = 0;
+		int lines = this.geometry.getLineCount();
+		for (int line = 0; line < lines; ++line) {
+			int own = board.getLineCount(player, line);
+			int other = board.getLineCount(3 - player, line);
+			if (other == 0 && own > 0) {
+				score += 1 << (2 * Math.min(own, 10));
+			} else if (own == 0 && other > 0) {
+				score -= 1 << (2 * Math.min(other, 10));
+			}
+		}
+		return score;
+	}
+
+	private long hashOf(TicTacToeGeneralBoard board) {
+		long key = 0;
+		for (int cell = 0; cell < this.geometry.getCells(); ++cell) {
+			int owner = board.get(cell);
+			if (owner != 0) {
+				key ^= this.zobrist[owner][cell];
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * @return the geometry this engine plays on
+	 */
+	public TicTacToeGeometry getGeometry() {
+		return this.geometry;
+	}
+}
@@ -0,0 +1,64 @@
+
+/**
+ * 
+ * This strategy plays the classic board with TicTacToeSearchEngine.
+ * An engine keeps a transposition table, so every thread gets its own
+ * engine and the strategy can still be shared. With a deadline it
+ * returns the best move of the deepest search finished in time.
+ *
+ */
+public class TicTacToeSearchStrategy implements TicTacToeAnytimeStrategy {
+	
+	private final ThreadLocal<TicTacToeSearchEngine> engines = new ThreadLocal<TicTacToeSearchEngine>() {
+		@Override
+		protected TicTacToeSearchEngine initialValue() {
+			return new TicTacToeSearchEngine();
+		}
+	};
+	
+	private final ThreadLocal<TicTacToeGeneralBoard> boards = new ThreadLocal<TicTacToeGeneralBoard>() {
+		@Override
+		protected TicTacToeGeneralBoard initialValue() {
+			return new TicTacToeGeneralBoard(TicTacToeGeometry.CLASSIC);
+		}
+	};
+	
+	@Override
+	public int selectMove(int packed) {
+		return this.search(packed).getMove();
+	}
+	
+	@Override
+	public int selectMove(int packed, TicTacToeDeadline deadline, int fallback) {
+		int move = this.search(packed, deadline).getMove();
+		return move == -1 ? fallback : move;
+	}
+	
+	/**
+	 * This search() method runs the engine on a packed board and
+	 * returns the whole decision, including the node count
+	 * 
+	 * @param packed packed game board, AI to move
+	 * @return the decision of the engine
+	 */
+	public TicTacToeSearchEngine.Result search(int packed) {
+		return this.search(packed, null);
+	}
+	
+	/**
+	 * @param packed packed game board, AI to move
+	 * @param deadline time budget, null for none
+	 * @return the decision of the engine
+	 */
+	public TicTacToeSearchEngine.Result search(int packed, TicTacToeDeadline deadline) {
+		TicTacToeGeneralBoard board = this.boards.get();
+		board.reset();
+		for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+			int player = TicTacToeBitboard.get(packed, cell);
+			if (player != 0) {
+				board.apply(cell, player);
+			}
+		}
+		return this.engines.get().search(board, 2, deadline);
+	}
+}
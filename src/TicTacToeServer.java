@@ -0,0 +1,434 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ *
+ * This class hosts many games at once over TCP. Every connection is
+ * one session that plays with the rules of TicTacToeSession, and all
+ * connections are served by a single selector loop, so thousands of
+ * sessions need only one thread. The AI answers in microseconds, so
+ * the loop never blocks for long. The games themselves are kept in a
+ * TicTacToeSessionStore, one int each, and a single TicTacToeSession
+ * is loaded from the store to play a move.
+ *
+ * The protocol is one line per command and one line per reply:
+ * <pre>
+ * NEW u | NEW p      start a game, user (u) or program (p) moves first
+ * MOVE row col       play the user's move, the AI answers in the same reply
+ * STATS              sessions, moves, memory and move latency percentiles
+ * QUIT               close the connection
+ * </pre>
+ * A game reply is "status board aiRow aiCol", where status is PLAYING,
+ * USER_WON, AI_WON or TIE, board is 9 characters ('X', 'O' or '.') row
+ * by row, and aiRow aiCol is the AI's answer or -1 -1. Errors are
+ * replied as "ERROR message". Connections idle for longer than the
+ * timeout are closed.
+ *
+ */
+public class TicTacToeServer implements Runnable {
+
+	private static final int MAX_LINE = 256;
+	private static final int BUFFER_SIZE = 4096;
+	private static final int DEFAULT_CAPACITY = 1 << 20;
+
+	private final TicTacToeSessionStore store;
+	// only the selector thread uses it, to play the move of one stored session at a time
+	private final TicTacToeSession session = new TicTacToeSession(new TicTacToeController());
+	private final TicTacToeHistogram moveLatency = new TicTacToeHistogram();
+	private final long idleTimeoutNanos;
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private volatile boolean running = true;
+	private final StringBuilder replyLine = new StringBuilder(32);
+	private int sessions = 0;
+	private long moves = 0;
+	private long timedOut = 0;
+	// heap allocated to accept the open connections, see getBytesPerMillionSessions()
+	private long connectionHeapBytes = 0;
+	// counts the bytes a thread allocates, null if the JVM cannot
+	private final com.sun.management.ThreadMXBean allocations;
+
+	/**
+	 * This opens the server socket, run() must be called to serve it
+	 *
+	 * @param port port to listen to, 0 picks a free port
+	 * @param idleTimeoutMillis connections idle for longer than this are closed
+	 * @throws IOException if the socket cannot be opened
+	 */
+	public TicTacToeServer(int port, long idleTimeoutMillis) throws IOException {
+		this(port, idleTimeoutMillis, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * This opens the server socket, run() must be called to serve it
+	 *
+	 * @param port port to listen to, 0 picks a free port
+	 * @param idleTimeoutMillis connections idle for longer than this are closed
+	 * @param capacity maximum number of sessions at the same time
+	 * @throws IOException if the socket cannot be opened
+	 */
+	public TicTacToeServer(int port, long idleTimeoutMillis, int capacity) throws IOException {
+		this.store = new TicTacToeSessionStore(capacity);
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		this.allocations = threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+				? (com.sun.management.ThreadMXBean) threads : null;
+		this.idleTimeoutNanos = idleTimeoutMillis * 1000000L;
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		this.serverChannel.bind(new InetSocketAddress("127.0.0.1", port), 1024);
+		this.serverChannel.configureBlocking(false);
+		this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * @return the port the server listens to
+	 */
+	public int getPort() {
+		return this.serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * @return the latency of handling a MOVE command, in nanoseconds
+	 */
+	public TicTacToeHistogram getMoveLatency() {
+		return this.moveLatency;
+	}
+
+	/**
+	 * The memory one million sessions take: the heap allocated for each
+	 * open connection, measured while it was accepted, plus its slot in
+	 * the session store. The heap of a connection is its channel, its
+	 * selection key and the buffers of Connection. On a JVM that cannot
+	 * count allocations only the buffers are counted.
+	 *
+	 * @return bytes per million sessions, 0 while no session is open
+	 */
+	public long getBytesPerMillionSessions() {
+		if (this.sessions == 0) {
+			return 0;
+		}
+		return this.connectionHeapBytes * 1000000L / this.sessions
+				+ this.store.getOffHeapBytes() * 1000000L / this.store.getCapacity();
+	}
+
+	/**
+	 * This stop() method asks the selector loop to close everything and return
+	 */
+	public void stop() {
+		this.running = false;
+		this.selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		long sweepInterval = Math.max(this.idleTimeoutNanos / 4, 1000000L);
+		long nextSweep = System.nanoTime() + sweepInterval;
+		try {
+			while (this.running) {
+				this.selector.select(Math.max(sweepInterval / 1000000L, 1));
+				Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					try {
+						if (!key.isValid()) {
+							continue;
+						}
+						if (key.isAcceptable()) {
+							this.accept();
+						} else {
+							if (key.isWritable() && this.flush(key)
+									&& ((Connection) key.attachment()).in.position() > 0) {
+								// lines were waiting for room in the output buffer
+								this.processInput(key, (Connection) key.attachment());
+							}
+							if (key.isValid() && key.isReadable()) {
+								this.read(key);
+							}
+						}
+					} catch (IOException e) {
+						this.close(key);
+					}
+				}
+				long now = System.nanoTime();
+				if (now - nextSweep >= 0) {
+					this.closeIdle(now);
+					nextSweep = now + sweepInterval;
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Error: server stopped: " + e.getMessage());
+		} finally {
+			for (SelectionKey key : this.selector.keys()) {
+				this.close(key);
+			}
+			try {
+				this.selector.close();
+			} catch (IOException e) {
+				// already stopping
+			}
+		}
+	}
+
+	/**
+	 * @return the store that holds the games
+	 */
+	public TicTacToeSessionStore getStore() {
+		return this.store;
+	}
+
+	/**
+	 *
+	 * One connection: the id of its game in the store, its buffers and when it was last used.
+	 *
+	 */
+	private static class Connection {
+		private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+		private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+		private final StringBuilder line = new StringBuilder();
+		private final int sessionId;
+		// heap allocated to accept this connection
+		private long heapBytes;
+		private long lastActive = System.nanoTime();
+		private boolean started = false;
+		private boolean closing = false;
+
+		Connection(int sessionId) {
+			this.sessionId = sessionId;
+		}
+	}
+
+	private void accept() throws IOException {
+		while (true) {
+			long allocated = this.allocatedBytes();
+			SocketChannel channel = this.serverChannel.accept();
+			if (channel == null) {
+				return;
+			}
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			int id = this.store.allocate(TicTacToeSessionStore.state(TicTacToeBitboard.EMPTY, false, TicTacToeSession.PLAYING));
+			if (id == TicTacToeSessionStore.NO_SESSION) {
+				channel.write(ByteBuffer.wrap("ERROR Server is full\n".getBytes(StandardCharsets.US_ASCII)));
+				channel.close();
+				continue;
+			}
+			Connection connection = new Connection(id);
+			channel.register(this.selector, SelectionKey.OP_READ, connection);
+			connection.heapBytes = this.allocations != null ? this.allocatedBytes() - allocated
+					: connection.in.capacity() + connection.out.capacity() + connection.line.capacity();
+			this.connectionHeapBytes += connection.heapBytes;
+			++this.sessions;
+		}
+	}
+
+	/**
+	 * @return bytes allocated by this thread so far, 0 if they are not counted
+	 */
+	private long allocatedBytes() {
+		return this.allocations == null ? 0 : this.allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private void read(SelectionKey key) throws IOException {
+		Connection connection = (Connection) key.attachment();
+		SocketChannel channel = (SocketChannel) key.channel();
+		int read = channel.read(connection.in);
+		if (read == -1) {
+			this.close(key);
+			return;
+		}
+		connection.lastActive = System.nanoTime();
+		this.processInput(key, connection);
+	}
+
+	/**
+	 * Handles every complete line in the input buffer, as long as
+	 * the reply still fits in the output buffer. When the output is
+	 * full it is flushed, and if the socket takes all of it the rest
+	 * of the lines are handled right away. Otherwise they stay in the
+	 * input buffer until the socket is writable again.
+	 */
+	private void processInput(SelectionKey key, Connection connection) throws IOException {
+		ByteBuffer in = connection.in;
+		do {
+			in.flip();
+			while (in.hasRemaining() && connection.out.remaining() >= MAX_LINE && !connection.closing) {
+				char c = (char) (in.get() & 0xFF);
+				if (c == '\n') {
+					this.handle(connection, connection.line.toString().trim());
+					connection.line.setLength(0);
+				} else if (c != '\r') {
+					if (connection.line.length() >= MAX_LINE) {
+						this.reply(connection, "ERROR Line too long");
+						connection.closing = true;
+					} else {
+						connection.line.append(c);
+					}
+				}
+			}
+			in.compact();
+		} while (this.flush(key) && in.position() > 0);
+	}
+
+	private void handle(Connection connection, String command) {
+		String[] words = command.split("\\s+");
+		String name = words[0].toUpperCase();
+		if (name.equals("NEW")) {
+			String first = words.length > 1 ? words[1].toLowerCase() : "";
+			if (!first.equals("u") && !first.equals("p")) {
+				this.reply(connection, "ERROR Invalid Input (enter 'u' or 'p')");
+				return;
+			}
+			this.session.start(first.equals("u") ? 1 : 2);
+			this.store.put(connection.sessionId, this.session.toState());
+			connection.started = true;
+			this.replyGame();
+			this.reply(connection, this.replyLine.toString());
+		} else if (name.equals("MOVE")) {
+			if (!connection.started) {
+				this.reply(connection, "ERROR No game started (send NEW u or NEW p)");
+				return;
+			}
+			int row;
+			int col;
+			try {
+				row = Integer.parseInt(words[1]);
+				col = Integer.parseInt(words[2]);
+			} catch (RuntimeException e) {
+				this.reply(connection, "ERROR Input row and column must be integers");
+				return;
+			}
+			long start = System.nanoTime();
+			this.session.restore(this.store.get(connection.sessionId));
+			String error = this.session.userMove(row, col);
+			if (error == null) {
+				this.store.put(connection.sessionId, this.session.toState());
+				this.replyGame();
+			}
+			this.moveLatency.record(System.nanoTime() - start);
+			++this.moves;
+			if (error != null) {
+				this.reply(connection, "ERROR " + errorMessage(error));
+			} else {
+				this.reply(connection, this.replyLine.toString());
+			}
+		} else if (name.equals("STATS")) {
+			this.reply(connection, "STATS sessions=" + this.sessions + " moves=" + this.moves
+					+ " timedOut=" + this.timedOut
+					+ " storeBytes=" + this.store.getOffHeapBytes()
+					+ " heapBytes=" + this.connectionHeapBytes
+					+ " bytesPerMillionSessions=" + this.getBytesPerMillionSessions()
+					+ " p50=" + this.moveLatency.getPercentile(50) + "ns"
+					+ " p99=" + this.moveLatency.getPercentile(99) + "ns");
+		} else if (name.equals("QUIT")) {
+			connection.closing = true;
+		} else {
+			this.reply(connection, "ERROR Unknown command");
+		}
+	}
+
+	/**
+	 * Formats the game of the loaded session into replyLine
+	 */
+	private void replyGame() {
+		TicTacToeSession session = this.session;
+		int packed = session.getPacked();
+		StringBuilder reply = this.replyLine;
+		reply.setLength(0);
+		reply.append(TicTacToeSession.statusName(session.getStatus())).append(' ');
+		TicTacToeView.appendCells(packed, reply);
+		int move = session.getLastAIMove();
+		if (move == -1) {
+			reply.append(" -1 -1");
+		} else {
+			reply.append(' ').append(TicTacToeBitboard.row(move)).append(' ').append(TicTacToeBitboard.column(move));
+		}
+	}
+
+	/**
+	 * The messages of TicTacToeSession are shared with the console and
+	 * start with "Error: ", the reply has only the message after it
+	 */
+	private static String errorMessage(String error) {
+		String prefix = "Error: ";
+		return error.startsWith(prefix) ? error.substring(prefix.length()) : error;
+	}
+
+	private void reply(Connection connection, String line) {
+		connection.out.put(line.getBytes(StandardCharsets.US_ASCII));
+		connection.out.put((byte) '\n');
+	}
+
+	/**
+	 * Writes as much of the output buffer as the socket takes
+	 *
+	 * @return true if all of it was written and the connection stays open
+	 */
+	private boolean flush(SelectionKey key) throws IOException {
+		Connection connection = (Connection) key.attachment();
+		ByteBuffer out = connection.out;
+		out.flip();
+		((SocketChannel) key.channel()).write(out);
+		out.compact();
+		if (out.position() > 0) {
+			key.interestOps(SelectionKey.OP_WRITE);
+			return false;
+		} else if (connection.closing) {
+			this.close(key);
+			return false;
+		}
+		key.interestOps(SelectionKey.OP_READ);
+		return true;
+	}
+
+	private void closeIdle(long now) {
+		for (SelectionKey key : this.selector.keys()) {
+			Object attachment = key.attachment();
+			if (attachment instanceof Connection
+					&& now - ((Connection) attachment).lastActive > this.idleTimeoutNanos) {
+				++this.timedOut;
+				this.close(key);
+			}
+		}
+	}
+
+	private void close(SelectionKey key) {
+		if (key.attachment() instanceof Connection) {
+			Connection connection = (Connection) key.attachment();
+			this.store.free(connection.sessionId);
+			this.connectionHeapBytes -= connection.heapBytes;
+			--this.sessions;
+			key.attach(null);
+		}
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			// nothing left to do with this connection
+		}
+	}
+
+	/**
+	 * Runs the server until the process is stopped.
+	 *
+	 * @param args port (default 7777), idle timeout in seconds (default 60)
+	 * @throws IOException if the socket cannot be opened
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+		long timeoutSeconds = args.length > 1 ? Long.parseLong(args[1]) : 60;
+		TicTacToeServer server = new TicTacToeServer(port, timeoutSeconds * 1000);
+		System.out.println("TicTacToe server listening on port " + server.getPort());
+		server.run();
+	}
+}
@@ -0,0 +1,157 @@
+
+/**
+ *
+ * This class plays one game with the same rules as
+ * TicTacToeMain.gameSteps(), but without the console, so that a
+ * server can host many games at once. The user's move is checked,
+ * played, and answered by the AI in one call.
+ *
+ */
+public class TicTacToeSession {
+
+	public static final int PLAYING = 0;
+	public static final int USER_WON = 1;
+	public static final int AI_WON = 2;
+	public static final int TIE = 3;
+
+	private static final String[] STATUS_NAMES = {"PLAYING", "USER_WON", "AI_WON", "TIE"};
+
+	private final TicTacToeController controller;
+	private final TicTacToeGameState state = new TicTacToeGameState();
+	private int status = PLAYING;
+	private int lastAIMove = -1;
+
+	/**
+	 * @param controller controller that decides the AI's moves, it can be
+	 * shared by every session
+	 */
+	public TicTacToeSession(TicTacToeController controller) {
+		this.controller = controller;
+	}
+
+	/**
+	 * This start() method begins a new game. If the AI moves
+	 * first, its move is played right away.
+	 *
+	 * @param firstMove 1 if the user moves first, 2 if the AI does
+	 */
+	public void start(int firstMove) {
+		this.state.reset();
+		this.status = PLAYING;
+		this.lastAIMove = -1;
+		if (firstMove == 2) {
+			this.aiTurn();
+		}
+	}
+
+	/**
+	 * This validateUserMove() method checks the user's move the same way
+	 * as TicTacToeMain.usersTerm(): it must be in range 0 to 2 and
+	 * the position must be empty.
+	 *
+	 * @param row input row
+	 * @param col input column
+	 * @param packed packed game board
+	 * @return null if the move is valid, else the error message
+	 */
+	public static String validateUserMove(int row, int col, int packed) {
+		if (row < 0 || row > 2 || col < 0 || col > 2) {
+			return "Error: Row and Column specified should be in range 0 to 2";
+		}
+		if (TicTacToeBitboard.get(packed, TicTacToeBitboard.cell(row, col)) != 0) {
+			return "Error: Position specified is already occupied";
+		}
+		return null;
+	}
+
+	/**
+	 * This userMove() method plays the user's move and then the
+	 * AI's answer, unless the user's move ended the game.
+	 *
+	 * @param row input row
+	 * @param col input column
+	 * @return null if the move was played, else the error message
+	 */
+	public String userMove(int row, int col) {
+		if (this.status != PLAYING) {
+			return "Error: The game is over";
+		}
+		String error = validateUserMove(row, col, this.state.getPacked());
+		if (error != null) {
+			return error;
+		}
+		this.lastAIMove = -1;
+		if (this.state.apply(row, col, 1)) {
+			this.status = USER_WON;
+		} else if (this.state.isFull()) {
+			this.status = TIE;
+		} else {
+			this.aiTurn();
+		}
+		return null;
+	}
+
+	private void aiTurn() {
+		int cell = this.controller.getAIPosition(this.state.getPacked());
+		this.lastAIMove = cell;
+		if (this.state.apply(cell, 2)) {
+			this.status = AI_WON;
+		} else if (this.state.isFull()) {
+			this.status = TIE;
+		}
+	}
+
+	/**
+	 * This toState() method packs the game for a TicTacToeSessionStore.
+	 * The AI always answers right away, so the user is the one to move.
+	 *
+	 * @return the packed state
+	 */
+	public int toState() {
+		return TicTacToeSessionStore.state(this.state.getPacked(), false, this.status);
+	}
+
+	/**
+	 * This restore() method continues a game from a packed state. If
+	 * the state says the AI is to move, the AI moves right away.
+	 *
+	 * @param packedState state made by toState() or TicTacToeSessionStore.state()
+	 */
+	public void restore(int packedState) {
+		this.state.load(TicTacToeSessionStore.board(packedState));
+		this.status = TicTacToeSessionStore.status(packedState);
+		this.lastAIMove = -1;
+		if (this.status == PLAYING && TicTacToeSessionStore.isAIToMove(packedState)) {
+			this.aiTurn();
+		}
+	}
+
+	/**
+	 * @param status PLAYING, USER_WON, AI_WON or TIE
+	 * @return the name of the status, as the server replies it
+	 */
+	public static String statusName(int status) {
+		return STATUS_NAMES[status];
+	}
+
+	/**
+	 * @return PLAYING, USER_WON, AI_WON or TIE
+	 */
+	public int getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * @return the cell of the AI's last answer, -1 if the AI has not answered the last move
+	 */
+	public int getLastAIMove() {
+		return this.lastAIMove;
+	}
+
+	/**
+	 * @return the packed board
+	 */
+	public int getPacked() {
+		return this.state.getPacked();
+	}
+}
@@ -0,0 +1,213 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ *
+ * This class stores the state of many games in one direct (off-heap)
+ * buffer, one int per session. The session id is the slot index.
+ * A state packs the board (bits 0 - 17, see TicTacToeBitboard), whose
+ * turn it is (bit 18, set when the AI moves next) and the status
+ * (bits 19 - 20, the TicTacToeSession constants). Bit 30 marks a slot
+ * in use; free slots hold the index of the next free slot instead.
+ *
+ * Updates to a session are done under one of a fixed number of
+ * locks picked by the session id (lock striping), so threads working
+ * on different sessions rarely wait for each other.
+ *
+ */
+public class TicTacToeSessionStore {
+
+	public static final int NO_SESSION = -1;
+
+	private static final int BOARD_MASK = (1 << 18) - 1;
+	private static final int AI_TO_MOVE = 1 << 18;
+	private static final int STATUS_SHIFT = 19;
+	private static final int IN_USE = 1 << 30;
+	private static final int STRIPES = 64;
+
+	/**
+	 *
+	 * An update of a session state, done while the session's lock is held
+	 *
+	 */
+	public interface Updater {
+		/**
+		 * @param state current state
+		 * @return new state
+		 */
+		int update(int state);
+	}
+
+	private final IntBuffer slots;
+	private final int capacity;
+	private final Object[] locks = new Object[STRIPES];
+	private final Object allocationLock = new Object();
+	private int freeHead;
+	private int size = 0;
+
+	/**
+	 * @param capacity maximum number of sessions at the same time
+	 */
+	public TicTacToeSessionStore(int capacity) {
+		if (capacity <= 0 || capacity > Integer.MAX_VALUE / 4) {
+			throw new IllegalArgumentException("Capacity must be between 1 and " + (Integer.MAX_VALUE / 4));
+		}
+		this.capacity = capacity;
+		this.slots = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		for (int i = 0; i < capacity; ++i) {
+			// the last slot links to capacity, which means the list is empty
+			this.slots.put(i, i + 1);
+		}
+		this.freeHead = 0;
+		for (int i = 0; i < STRIPES; ++i) {
+			this.locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * This allocate() method takes a free slot for a new session
+	 *
+	 * @param state first state of the session
+	 * @return the session id, or NO_SESSION if the store is full
+	 */
+	public int allocate(int state) {
+		synchronized (this.allocationLock) {
+			if (this.freeHead == this.capacity) {
+				return NO_SESSION;
+			}
+			int id = this.freeHead;
+			synchronized (this.lockOf(id)) {
+				this.freeHead = this.slots.get(id);
+				this.slots.put(id, IN_USE | state);
+			}
+			++this.size;
+			return id;
+		}
+	}
+
+	/**
+	 * This free() method gives the slot of a session back to the store
+	 *
+	 * @param id session id
+	 */
+	public void free(int id) {
+		synchronized (this.allocationLock) {
+			synchronized (this.lockOf(id)) {
+				this.checkInUse(id);
+				this.slots.put(id, this.freeHead);
+			}
+			this.freeHead = id;
+			--this.size;
+		}
+	}
+
+	/**
+	 * @param id session id
+	 * @return the state of the session
+	 */
+	public int get(int id) {
+		synchronized (this.lockOf(id)) {
+			return this.checkInUse(id) & ~IN_USE;
+		}
+	}
+
+	/**
+	 * @param id session id
+	 * @param state new state of the session
+	 */
+	public void put(int id, int state) {
+		synchronized (this.lockOf(id)) {
+			this.checkInUse(id);
+			this.slots.put(id, IN_USE | state);
+		}
+	}
+
+	/**
+	 * This update() method reads, changes and writes a session state
+	 * as one step, no other thread can change it in between
+	 *
+	 * @param id session id
+	 * @param updater the change
+	 * @return the new state
+	 */
+	public int update(int id, Updater updater) {
+		synchronized (this.lockOf(id)) {
+			int state = updater.update(this.checkInUse(id) & ~IN_USE);
+			this.slots.put(id, IN_USE | state);
+			return state;
+		}
+	}
+
+	/**
+	 * @return number of sessions in use
+	 */
+	public int size() {
+		synchronized (this.allocationLock) {
+			return this.size;
+		}
+	}
+
+	/**
+	 * @return maximum number of sessions
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return bytes of the off-heap table, from the size of its buffer
+	 */
+	public long getOffHeapBytes() {
+		return (long) this.slots.capacity() * Integer.BYTES;
+	}
+
+	/**
+	 * @param board packed board
+	 * @param aiToMove true if the AI moves next
+	 * @param status TicTacToeSession status
+	 * @return the packed state
+	 */
+	public static int state(int board, boolean aiToMove, int status) {
+		return (board & BOARD_MASK) | (aiToMove ? AI_TO_MOVE : 0) | (status << STATUS_SHIFT);
+	}
+
+	/**
+	 * @param state packed state
+	 * @return the packed board
+	 */
+	public static int board(int state) {
+		return state & BOARD_MASK;
+	}
+
+	/**
+	 * @param state packed state
+	 * @return true if the AI moves next
+	 */
+	public static boolean isAIToMove(int state) {
+		return (state & AI_TO_MOVE) != 0;
+	}
+
+	/**
+	 * @param state packed state
+	 * @return the TicTacToeSession status
+	 */
+	public static int status(int state) {
+		return (state >>> STATUS_SHIFT) & 0x03;
+	}
+
+	private Object lockOf(int id) {
+		return this.locks[id & (STRIPES - 1)];
+	}
+
+	private int checkInUse(int id) {
+		if (id < 0 || id >= this.capacity) {
+			throw new IllegalArgumentException("No session " + id);
+		}
+		int slot = this.slots.get(id);
+		if ((slot & IN_USE) == 0) {
+			throw new IllegalStateException("Session " + id + " is not in use");
+		}
+		return slot;
+	}
+}
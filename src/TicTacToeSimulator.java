@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *
+ * This class plays games without any console input or output, to
+ * measure how well and how fast the AI plays. The AI under test is
+ * always O (player 2) and the opponent is X (player 1). Games with an
+ * even number start with the opponent and odd ones start with the AI.
+ * The games are split into ranges and run on a ForkJoinPool, so every
+ * core is used.
+ *
+ */
+public class TicTacToeSimulator {
+
+	// games per task before it is split again
+	private static final long THRESHOLD = 1 << 14;
+
+	private final TicTacToeStrategy ai;
+	private final TicTacToeStrategy opponent;
+	// every game is recorded here if set, the game number is the session id
+	private TicTacToeGameLog gameLog = null;
+
+	/**
+	 * @param ai strategy of the AI under test, plays O
+	 * @param opponent strategy of the opponent, it is given boards with
+	 * the players swapped so it can also be an AI strategy
+	 */
+	public TicTacToeSimulator(TicTacToeStrategy ai, TicTacToeStrategy opponent) {
+		this.ai = ai;
+		this.opponent = opponent;
+	}
+
+	/**
+	 * @param gameLog log to record every game in, null for none
+	 */
+	public void setGameLog(TicTacToeGameLog gameLog) {
+		this.gameLog = gameLog;
+	}
+
+	/**
+	 * This run() method plays the games on the pool and adds up the results
+	 *
+	 * @param games number of games to play
+	 * @param pool pool that runs the games
+	 * @return the results of all games
+	 */
+	public Result run(long games, ForkJoinPool pool) {
+		return pool.invoke(new SimulationTask(0, games));
+	}
+
+	/**
+	 * This play() method plays one game to the end on the game state
+	 *
+	 * @param game number of the game, decides who moves first
+	 * @param state game state, it is reset before the game
+	 * @return the player who won, or 0 for a tie
+	 */
+	public int play(long game, TicTacToeGameState state) {
+		return this.playGame(game, state) & 0x03;
+	}
+
+	/**
+	 * play() that also reports the branches that decided the AI moves.
+	 * They are known when the AI is a TicTacToeHeuristicStrategy, any
+	 * other strategy is BRANCH_NONE.
+	 *
+	 * @param game number of the game, decides who moves first
+	 * @param state game state, it is reset before the game
+	 * @return the winner in the low 2 bits, the branches of
+	 * TicTacToeGameLog.addBranch() above them
+	 */
+	private int playGame(long game, TicTacToeGameState state) {
+		state.reset();
+		int turn = firstMover(game);
+		int branches = 0;
+		int aiMoves = 0;
+		TicTacToeHeuristicStrategy heuristics = this.ai instanceof TicTacToeHeuristicStrategy
+				? (TicTacToeHeuristicStrategy) this.ai : null;
+		while (!state.isFull()) {
+			int cell;
+			if (turn == 2 && heuristics != null) {
+				int evaluation = heuristics.evaluate(state.getPacked());
+				cell = TicTacToeController.evaluationCell(evaluation);
+				branches = TicTacToeGameLog.addBranch(branches, aiMoves++, TicTacToeController.evaluationBranch(evaluation));
+			} else if (turn == 2) {
+				cell = this.ai.selectMove(state.getPacked());
+			} else {
+				cell = this.opponent.selectMove(TicTacToeBitboard.swap(state.getPacked()));
+			}
+			if (state.apply(cell, turn)) {
+				return (branches << 2) | turn;
+			}
+			turn = 3 - turn;
+		}
+		return branches << 2;
+	}
+
+	/**
+	 * @param game number of the game
+	 * @return the player that moves first in this game
+	 */
+	public static int firstMover(long game) {
+		return (game & 1) == 0 ? 1 : 2;
+	}
+
+	/**
+	 * This creates a strategy from the name used on the command line
+	 *
+	 * @param name "ai" (the heuristics), "perfect", "search", "mcts" or "random"
+	 * @return the strategy
+	 */
+	public static TicTacToeStrategy strategyFor(String name) {
+		if (name.equals("ai")) {
+			return new TicTacToeHeuristicStrategy();
+		} else if (name.equals("perfect")) {
+			return new TicTacToePerfectStrategy();
+		} else if (name.equals("search")) {
+			return new TicTacToeSearchStrategy();
+		} else if (name.equals("mcts")) {
+			return new TicTacToeMonteCarloStrategy();
+		} else if (name.equals("random")) {
+			return new TicTacToeRandomStrategy();
+		}
+		throw new IllegalArgumentException("Unknown player: " + name + " (use ai, perfect, search, mcts or random)");
+	}
+
+	/**
+	 *
+	 * The results of a range of games. The first loss is the loss of
+	 * the AI with the lowest game number, so it does not depend on how
+	 * the games were split between threads.
+	 *
+	 */
+	public static class Result {
+		private long games;
+		private long aiWins;
+		private long draws;
+		private long aiLosses;
+		private long firstLossGame = -1;
+		private int[] firstLossMoves;
+
+		void add(long game, int winner, TicTacToeGameState state) {
+			++this.games;
+			if (winner == 2) {
+				++this.aiWins;
+			} else if (winner == 0) {
+				++this.draws;
+			} else {
+				++this.aiLosses;
+				if (this.firstLossGame == -1 || game < this.firstLossGame) {
+					this.firstLossGame = game;
+					this.firstLossMoves = new int[state.getMoveCount()];
+					for (int i = 0; i < this.firstLossMoves.length; ++i) {
+						this.firstLossMoves[i] = state.getMove(i);
+					}
+				}
+			}
+		}
+
+		Result merge(Result other) {
+			this.games += other.games;
+			this.aiWins += other.aiWins;
+			this.draws += other.draws;
+			this.aiLosses += other.aiLosses;
+			if (other.firstLossGame != -1
+					&& (this.firstLossGame == -1 || other.firstLossGame < this.firstLossGame)) {
+				this.firstLossGame = other.firstLossGame;
+				this.firstLossMoves = other.firstLossMoves;
+			}
+			return this;
+		}
+
+		public long getGames() {
+			return this.games;
+		}
+
+		public long getAIWins() {
+			return this.aiWins;
+		}
+
+		public long getDraws() {
+			return this.draws;
+		}
+
+		public long getAILosses() {
+			return this.aiLosses;
+		}
+
+		/**
+		 * @return number of the first game the AI lost, -1 if it never lost
+		 */
+		public long getFirstLossGame() {
+			return this.firstLossGame;
+		}
+
+		/**
+		 * This describes the moves of the first lost game, for example
+		 * "X(0,0) O(1,1) X(2,2) ..."
+		 *
+		 * @return the move sequence, or null if the AI never lost
+		 */
+		public String describeFirstLoss() {
+			if (this.firstLossMoves == null) {
+				return null;
+			}
+			StringBuilder moves = new StringBuilder();
+			int turn = firstMover(this.firstLossGame);
+			for (int cell : this.firstLossMoves) {
+				if (moves.length() > 0) {
+					moves.append(' ');
+				}
+				moves.append(turn == 1 ? 'X' : 'O').append('(')
+					.append(TicTacToeBitboard.row(cell)).append(',')
+					.append(TicTacToeBitboard.column(cell)).append(')');
+				turn = 3 - turn;
+			}
+			return moves.toString();
+		}
+	}
+
+	/**
+	 *
+	 * Plays the games from (inclusive) to to (exclusive), splitting
+	 * the range in half while it is larger than THRESHOLD.
+	 *
+	 */
+	private class SimulationTask extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 1L;
+		private final long from;
+		private final long to;
+
+		SimulationTask(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Result compute() {
+			if (this.to - this.from <= THRESHOLD) {
+				Result result = new Result();
+				TicTacToeGameState state = new TicTacToeGameState();
+				for (long game = this.from; game < this.to; ++game) {
+					int played = playGame(game, state);
+					result.add(game, played & 0x03, state);
+					if (gameLog != null) {
+						try {
+							gameLog.record(game, firstMover(game), state, played >>> 2);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				}
+				return result;
+			}
+			long middle = (this.from + this.to) >>> 1;
+			SimulationTask left = new SimulationTask(this.from, middle);
+			left.fork();
+			Result right = new SimulationTask(middle, this.to).compute();
+			return left.join().merge(right);
+		}
+	}
+
+	/**
+	 * Runs the simulation and prints a report.
+	 *
+	 * @param args opponent (ai, random, search, mcts or perfect), number of games
+	 * (default 1000000), number of threads (default all cores), game log
+	 * file to record the games in (default none)
+	 * @throws IOException if the game log cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		String opponentName = args.length > 0 ? args[0] : "random";
+		long games = args.length > 1 ? Long.parseLong(args[1]) : 1000000L;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		TicTacToeSimulator simulator = new TicTacToeSimulator(new TicTacToeHeuristicStrategy(), strategyFor(opponentName));
+		TicTacToeGameLog log = args.length > 3 ? new TicTacToeGameLog(Paths.get(args[3])) : null;
+		simulator.setGameLog(log);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		Result result = simulator.run(games, pool);
+		if (log != null) {
+			log.close();
+		}
+		long elapsed = System.nanoTime() - start;
+		pool.shutdown();
+
+		double seconds = elapsed / 1e9;
+		System.out.println("AI vs " + opponentName + ": " + result.getGames() + " games on " + threads + " threads");
+		System.out.printf("Time: %.3f s, %.0f games/sec%n", seconds, result.getGames() / seconds);
+		System.out.printf("AI (O):       %d wins, %d draws, %d losses%n",
+				result.getAIWins(), result.getDraws(), result.getAILosses());
+		System.out.printf("%-13s %d wins, %d draws, %d losses%n", opponentName + " (X):",
+				result.getAILosses(), result.getDraws(), result.getAIWins());
+		if (result.getFirstLossGame() == -1) {
+			System.out.println("The AI did not lose any game");
+		} else {
+			System.out.println("First loss in game " + result.getFirstLossGame() + ": " + result.describeFirstLoss());
+		}
+	}
+}
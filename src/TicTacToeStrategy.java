@@ -0,0 +1,21 @@
+
+/**
+ * 
+ * A TicTacToeStrategy decides where the AI (player 2) moves
+ * for a packed board. TicTacToeController uses it in getAIPosition()
+ * so different engines can be selected without changing the game.
+ * Implementations must not keep per-call state, since a controller
+ * may be shared by many threads.
+ *
+ */
+public interface TicTacToeStrategy {
+	
+	/**
+	 * This selectMove() method picks the cell where the AI will move.
+	 * The board must have at least one empty cell.
+	 * 
+	 * @param packed packed game board, AI to move
+	 * @return the cell index that AI will move
+	 */
+	int selectMove(int packed);
+}
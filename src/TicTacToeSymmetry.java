@@ -0,0 +1,148 @@
+
+/**
+ *
+ * This class maps a board to one representative of its 8 symmetric
+ * boards (4 rotations, each with or without a mirror), so that a
+ * table or cache keyed by board only needs one entry for all of
+ * them. The representative is the one with the smallest packed value.
+ *
+ * canonicalize() returns the canonical board and the transform that
+ * produced it in one int: the board is in bits 3 and up, the transform
+ * in bits 0 - 2. A move found on the canonical board is mapped back
+ * to the original board with toOriginalCell().
+ *
+ */
+public final class TicTacToeSymmetry {
+
+	public static final int TRANSFORMS = 8;
+	public static final int IDENTITY = 0;
+
+	// CELL_MAP[t][cell] is where transform t moves the cell
+	private static final int[][] CELL_MAP = new int[TRANSFORMS][TicTacToeBitboard.CELLS];
+	// INVERSE_MAP[t][cell] is the cell that transform t moves onto the cell
+	private static final int[][] INVERSE_MAP = new int[TRANSFORMS][TicTacToeBitboard.CELLS];
+	// MASK_MAP[t][mask] is the 9-bit mask after transform t
+	private static final short[][] MASK_MAP = new short[TRANSFORMS][TicTacToeBitboard.FULL + 1];
+
+	static {
+		for (int t = 0; t < TRANSFORMS; ++t) {
+			for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+				int row = TicTacToeBitboard.row(cell);
+				int col = TicTacToeBitboard.column(cell);
+				if (t >= 4) {
+					// mirror left to right
+					col = 2 - col;
+				}
+				for (int r = 0; r < t % 4; ++r) {
+					// rotate 90 degrees clockwise
+					int next = col;
+					col = 2 - row;
+					row = next;
+				}
+				CELL_MAP[t][cell] = TicTacToeBitboard.cell(row, col);
+				INVERSE_MAP[t][CELL_MAP[t][cell]] = cell;
+			}
+			for (int mask = 0; mask <= TicTacToeBitboard.FULL; ++mask) {
+				int mapped = 0;
+				for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+					if ((mask & (1 << cell)) != 0) {
+						mapped |= 1 << CELL_MAP[t][cell];
+					}
+				}
+				MASK_MAP[t][mask] = (short) mapped;
+			}
+		}
+	}
+
+	private TicTacToeSymmetry() {
+	}
+
+	/**
+	 * This transform() method applies one of the 8 symmetries to a board
+	 *
+	 * @param packed packed board
+	 * @param transform transform number, 0 - 7
+	 * @return the transformed board
+	 */
+	public static int transform(int packed, int transform) {
+		short[] map = MASK_MAP[transform];
+		return map[packed & TicTacToeBitboard.FULL]
+				| (map[(packed >>> TicTacToeBitboard.SHIFT) & TicTacToeBitboard.FULL] << TicTacToeBitboard.SHIFT);
+	}
+
+	/**
+	 * This canonicalize() method finds the symmetric board with the smallest
+	 * packed value, and the transform that maps the board onto it
+	 *
+	 * @param packed packed board
+	 * @return canonical board in bits 3 and up, transform in bits 0 - 2
+	 */
+	public static int canonicalize(int packed) {
+		int best = packed;
+		int bestTransform = IDENTITY;
+		for (int t = 1; t < TRANSFORMS; ++t) {
+			int candidate = transform(packed, t);
+			if (candidate < best) {
+				best = candidate;
+				bestTransform = t;
+			}
+		}
+		return (best << 3) | bestTransform;
+	}
+
+	/**
+	 * @param canonical result of canonicalize()
+	 * @return the canonical board
+	 */
+	public static int canonicalBoard(int canonical) {
+		return canonical >>> 3;
+	}
+
+	/**
+	 * @param canonical result of canonicalize()
+	 * @return the transform that maps the original board onto the canonical one
+	 */
+	public static int transformOf(int canonical) {
+		return canonical & 0x07;
+	}
+
+	/**
+	 * @param cell cell on the original board
+	 * @param transform transform number, 0 - 7
+	 * @return where the transform moves the cell
+	 */
+	public static int mapCell(int cell, int transform) {
+		return CELL_MAP[transform][cell];
+	}
+
+	/**
+	 * This toOriginalCell() method maps a cell of the transformed board
+	 * back onto the original board, for example a move chosen on the
+	 * canonical board
+	 *
+	 * @param cell cell on the transformed board, or -1
+	 * @param transform the transform that was applied
+	 * @return the cell on the original board, -1 if cell was -1
+	 */
+	public static int toOriginalCell(int cell, int transform) {
+		if (cell == -1) {
+			return -1;
+		}
+		return INVERSE_MAP[transform][cell];
+	}
+
+	/**
+	 * This findMove() method asks a strategy for its move on the canonical
+	 * board and maps it back. Any cache in front of the strategy can then
+	 * be keyed on canonical boards only.
+	 *
+	 * @param strategy strategy that decides the move
+	 * @param packed packed board, AI to move
+	 * @return the cell on the original board
+	 */
+	public static int findMove(TicTacToeStrategy strategy, int packed) {
+		int canonical = canonicalize(packed);
+		int cell = strategy.selectMove(canonicalBoard(canonical));
+		return toOriginalCell(cell, transformOf(canonical));
+	}
+}
@@ -0,0 +1,244 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ *
+ * This strategy plays perfectly from a tablebase file instead of
+ * solving the game when it is loaded, so a short CLI run does not pay
+ * for the solve. The file is written once by main() and read through a
+ * MappedByteBuffer, so nothing is copied onto the heap and the first
+ * move is a single read of the mapped page.
+ *
+ * Only canonical boards (see TicTacToeSymmetry) with the AI to move
+ * are stored, 5 bytes each. The file is a 16 byte header, the sorted
+ * canonical boards and one byte per board:
+ *
+ * <pre>
+ * int  MAGIC    "TTTB"
+ * int  VERSION
+ * int  entries
+ * int  CRC32 of the boards and entries
+ * int  board[entries]: packed canonical boards, ascending
+ * byte entry[entries]: low 4 bits = best cell, high 4 bits = value + 1
+ * </pre>
+ *
+ * A lookup is a binary search of the boards, about 10 reads. The
+ * mapped buffer is only read with absolute gets, so one instance can
+ * be shared between threads.
+ *
+ */
+public class TicTacToeTablebase implements TicTacToeStrategy {
+
+	public static final int MAGIC = 0x54545442;
+	public static final int VERSION = 2;
+	public static final int HEADER_BYTES = 16;
+
+	/**
+	 * value of a board that is not in the tablebase: not a legal board
+	 * with the AI to move
+	 */
+	public static final int UNKNOWN = -2;
+
+	/**
+	 * file used by the game when nothing else is given
+	 */
+	public static final String DEFAULT_FILE = "tictactoe.tb";
+
+	private final MappedByteBuffer data;
+	private final int count;
+
+	private TicTacToeTablebase(MappedByteBuffer data, int count) {
+		this.data = data;
+		this.count = count;
+	}
+
+	/**
+	 * This open() method maps a tablebase file and checks its header and checksum
+	 *
+	 * @param path tablebase file
+	 * @return the tablebase
+	 * @throws IOException if the file cannot be read or is not a valid tablebase
+	 */
+	public static TicTacToeTablebase open(Path path) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES || channel.size() > HEADER_BYTES + 5L * TicTacToeBitboard.POSITIONS) {
+				throw new IOException("Invalid tablebase size " + channel.size() + ": " + path);
+			}
+			// the mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a tablebase: " + path);
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported tablebase version " + buffer.getInt(4) + ": " + path);
+		}
+		int count = buffer.getInt(8);
+		if (count < 0 || buffer.capacity() != HEADER_BYTES + 5L * count) {
+			throw new IOException("Invalid tablebase entry count " + count + ": " + path);
+		}
+		ByteBuffer data = buffer.duplicate();
+		data.position(HEADER_BYTES);
+		if (buffer.getInt(12) != checksum(data)) {
+			throw new IOException("Tablebase checksum mismatch: " + path);
+		}
+		return new TicTacToeTablebase(buffer, count);
+	}
+
+	/**
+	 * This openIfPresent() method is open() for callers that can play
+	 * without a tablebase: a missing file gives null, and so does a
+	 * broken one after printing why
+	 *
+	 * @param path tablebase file
+	 * @return the tablebase, or null to keep the heuristics
+	 */
+	public static TicTacToeTablebase openIfPresent(Path path) {
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+		try {
+			return open(path);
+		} catch (IOException e) {
+			System.err.println("Tablebase ignored: " + e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public int selectMove(int packed) {
+		int canonical = TicTacToeSymmetry.canonicalize(packed);
+		int entry = this.find(TicTacToeSymmetry.canonicalBoard(canonical));
+		if (entry == -1) {
+			return TicTacToePerfectStrategy.NO_MOVE;
+		}
+		return TicTacToeSymmetry.toOriginalCell(this.data.get(entry) & 0x0F, TicTacToeSymmetry.transformOf(canonical));
+	}
+
+	/**
+	 * This getValue() method returns the game theoretic value for the
+	 * AI when both sides play perfectly from this board.
+	 *
+	 * @param packed packed game board, AI to move
+	 * @return WIN, DRAW or LOSS of TicTacToePerfectStrategy, UNKNOWN if
+	 * the AI cannot move on the board
+	 */
+	public int getValue(int packed) {
+		int entry = this.find(TicTacToeSymmetry.canonicalBoard(TicTacToeSymmetry.canonicalize(packed)));
+		if (entry == -1) {
+			return UNKNOWN;
+		}
+		return ((this.data.get(entry) >>> 4) & 0x03) - 1;
+	}
+
+	/**
+	 * @return number of boards in the tablebase
+	 */
+	public int size() {
+		return this.count;
+	}
+
+	/**
+	 * This find() method looks for a canonical board by binary search
+	 *
+	 * @param canonical canonical packed board
+	 * @return the offset of its entry byte in the file, -1 if it is not there
+	 */
+	private int find(int canonical) {
+		int low = 0;
+		int high = this.count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int board = this.data.getInt(HEADER_BYTES + 4 * middle);
+			if (board < canonical) {
+				low = middle + 1;
+			} else if (board > canonical) {
+				high = middle - 1;
+			} else {
+				return HEADER_BYTES + 4 * this.count + middle;
+			}
+		}
+		return -1;
+	}
+
+	private static int checksum(ByteBuffer data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * This generate() method solves the game with TicTacToePerfectStrategy
+	 * and writes the tablebase. The file is written next to the target
+	 * and then moved over it, so a reader never sees half a file.
+	 *
+	 * @param path tablebase file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void generate(Path path) throws IOException {
+		TicTacToePerfectStrategy perfect = new TicTacToePerfectStrategy();
+		int[] boards = new int[TicTacToeBitboard.POSITIONS];
+		int count = 0;
+		for (int index = 0; index < TicTacToeBitboard.POSITIONS; ++index) {
+			int packed = TicTacToeBitboard.fromIndex(index);
+			if (TicTacToePerfectStrategy.isAIToMove(packed)
+					&& TicTacToeSymmetry.canonicalBoard(TicTacToeSymmetry.canonicalize(packed)) == packed) {
+				boards[count++] = packed;
+			}
+		}
+		boards = Arrays.copyOf(boards, count);
+		Arrays.sort(boards);
+		ByteBuffer data = ByteBuffer.allocate(5 * count);
+		for (int packed : boards) {
+			data.putInt(packed);
+		}
+		for (int packed : boards) {
+			data.put((byte) (perfect.selectMove(packed) | ((perfect.getValue(packed) + 1) << 4)));
+		}
+		data.flip();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(checksum(data.duplicate()));
+		header.flip();
+
+		Path absolute = path.toAbsolutePath();
+		Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer[] buffers = {header, data};
+				while (data.hasRemaining()) {
+					channel.write(buffers);
+				}
+				channel.force(true);
+			}
+			Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Writes the tablebase offline.
+	 *
+	 * @param args file to write (default tictactoe.tb)
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		Path path = Paths.get(args.length > 0 ? args[0] : DEFAULT_FILE);
+		long start = System.nanoTime();
+		generate(path);
+		System.out.printf("Wrote %s (%d bytes) in %.1f ms%n", path, Files.size(path),
+				(System.nanoTime() - start) / 1e6);
+	}
+}
@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * 
@@ -8,11 +10,44 @@
  */
 public class TicTacToeTester {
 	/**
-	 * create a TicTacToeMain class to begin the game
+	 * create a TicTacToeMain class to begin the game. If a tablebase
+	 * file exists (tictactoe.tb, or the tictactoe.tablebase property)
+	 * the AI plays from it, else it uses the heuristics. If the
+	 * tictactoe.gamelog property names a file, the game is appended to it.
+	 * If the tictactoe.weights property names a file written by
+	 * TicTacToeTuner, the heuristics use those weights.
+	 * If the tictactoe.script property names a file ("-" for standard
+	 * input), the games in it are replayed instead (see TicTacToeScript).
+	 * With -Dtictactoe.mode=qubic the game is Qubic (4x4x4) instead,
+	 * see TicTacToeQubicMain.
 	 * @param args not used
+	 * @throws IOException if the game log cannot be opened or written
 	 */
-	public static void main(String [] args) {
+	public static void main(String [] args) throws IOException {
+		if ("qubic".equals(System.getProperty("tictactoe.mode"))) {
+			new TicTacToeQubicMain().startGame();
+			return;
+		}
 		TicTacToeMain new_game = new TicTacToeMain();
-		new_game.startGame();
+		new_game.setStrategy(TicTacToeTablebase.openIfPresent(
+				Paths.get(System.getProperty("tictactoe.tablebase", TicTacToeTablebase.DEFAULT_FILE))));
+		String weights = System.getProperty("tictactoe.weights");
+		if (weights != null) {
+			new_game.setWeights(TicTacToeWeights.load(Paths.get(weights)));
+		}
+		String script = System.getProperty("tictactoe.script");
+		if (script != null) {
+			TicTacToeScript.replay(new_game, script);
+			return;
+		}
+		String logFile = System.getProperty("tictactoe.gamelog");
+		if (logFile == null) {
+			new_game.startGame();
+			return;
+		}
+		try (TicTacToeGameLog log = new TicTacToeGameLog(Paths.get(logFile))) {
+			new_game.setGameLog(log, System.currentTimeMillis());
+			new_game.startGame();
+		}
 	}
 }
@@ -0,0 +1,346 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *
+ * This class tunes TicTacToeWeights by self-play. Weights are scored
+ * by playing many games with the heuristics under test (O) against
+ * two opponents (X): the perfect strategy and the current best
+ * weights. Each opponent makes a random move some of the time, so
+ * the games cover more than the single line the players would
+ * otherwise repeat. A win counts 1, a draw 0 and a loss -10. The
+ * random moves come from the seed and the game number, so every
+ * candidate plays the same games. The games are played on a
+ * ForkJoinPool, so every core is used.
+ *
+ * The search is coordinate descent: each weight is moved up and down
+ * by a step, and a change is kept if it scores better. The self-play
+ * opponent is the best weights at the start of the round, so all
+ * scores of a round come from the same games. When a whole round
+ * changes nothing, the step is halved, and the search ends after a
+ * round with step 1 that changes nothing, or after MAX_ROUNDS rounds,
+ * since a new opponent in every round can make the changes go in a
+ * circle. The best weights are checkpointed after every change and
+ * every round, and a run that finds a checkpoint continues from it.
+ *
+ */
+public class TicTacToeTuner {
+
+	public static final String DEFAULT_CHECKPOINT = "tictactoe.tuner";
+	public static final String DEFAULT_OUTPUT = "tictactoe.weights";
+
+	public static final int WIN_SCORE = 1;
+	public static final int LOSS_SCORE = -10;
+
+	// weights are kept in this range
+	public static final int MIN_WEIGHT = 0;
+	public static final int MAX_WEIGHT = 64;
+
+	// the search stops after this many rounds even if it still finds changes
+	public static final int MAX_ROUNDS = 64;
+
+	// games per task before it is split again
+	private static final long THRESHOLD = 1 << 12;
+
+	private static final TicTacToeStrategy PERFECT = new TicTacToePerfectStrategy();
+
+	private final long games;
+	private final long seed;
+	private final int noisePercent;
+	private final ForkJoinPool pool;
+
+	/**
+	 * @param games games played to score one set of weights
+	 * @param seed seed of the opponents' random moves
+	 * @param noisePercent how often, in percent, an opponent moves at random
+	 * @param pool pool that plays the games
+	 */
+	public TicTacToeTuner(long games, long seed, int noisePercent, ForkJoinPool pool) {
+		this.games = games;
+		this.seed = seed;
+		this.noisePercent = noisePercent;
+		this.pool = pool;
+	}
+
+	/**
+	 * This score() method plays the games of a set of weights
+	 *
+	 * @param weights weights under test
+	 * @param reference weights of the self-play opponent
+	 * @return the results of the games
+	 */
+	public Score score(TicTacToeWeights weights, TicTacToeWeights reference) {
+		return this.pool.invoke(new ScoreTask(new TicTacToeHeuristicStrategy(weights),
+				new TicTacToeHeuristicStrategy(reference), 0, this.games));
+	}
+
+	/**
+	 * This play() method plays one game to the end on the game state.
+	 * Odd games start with the weights under test, and games 2 and 3
+	 * of every 4 are played against the reference instead of the
+	 * perfect strategy.
+	 *
+	 * @param game number of the game
+	 * @param ai heuristics under test, plays O
+	 * @param reference self-play opponent
+	 * @param state game state, it is reset before the game
+	 * @return the player who won, or 0 for a tie
+	 */
+	public int play(long game, TicTacToeStrategy ai, TicTacToeStrategy reference, TicTacToeGameState state) {
+		TicTacToeStrategy opponent = (game & 2) == 0 ? PERFECT : reference;
+		state.reset();
+		int turn = TicTacToeSimulator.firstMover(game);
+		while (!state.isFull()) {
+			int packed = state.getPacked();
+			int cell;
+			if (turn == 2) {
+				cell = ai.selectMove(packed);
+			} else {
+				long random = mix(this.seed ^ mix(game * 16 + state.getMoveCount()));
+				if ((int) ((random >>> 32) % 100) < this.noisePercent) {
+					cell = randomCell(packed, random);
+				} else {
+					cell = opponent.selectMove(TicTacToeBitboard.swap(packed));
+				}
+			}
+			if (state.apply(cell, turn)) {
+				return turn;
+			}
+			turn = 3 - turn;
+		}
+		return 0;
+	}
+
+	private static int randomCell(int packed, long random) {
+		int empty = TicTacToeBitboard.emptyCells(packed);
+		int skip = (int) ((random & 0xFFFFFFFFL) % Integer.bitCount(empty));
+		for (int i = 0; i < skip; ++i) {
+			empty &= empty - 1;
+		}
+		return Integer.numberOfTrailingZeros(empty);
+	}
+
+	/**
+	 * the finalizer of SplitMix64, it turns a counter into random bits
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * This tune() method runs the coordinate descent
+	 *
+	 * @param start weights to start from, unless the checkpoint has some
+	 * @param step first step of the weights
+	 * @param checkpoint file the progress is saved in, null for none
+	 * @return the best weights found
+	 * @throws IOException if the checkpoint cannot be read or written
+	 */
+	public TicTacToeWeights tune(TicTacToeWeights start, int step, Path checkpoint) throws IOException {
+		TicTacToeWeights best = start;
+		int round = 0;
+		if (checkpoint != null && Files.exists(checkpoint)) {
+			Properties saved = new Properties();
+			try (Reader in = Files.newBufferedReader(checkpoint, StandardCharsets.ISO_8859_1)) {
+				saved.load(in);
+			}
+			best = TicTacToeWeights.fromProperties(saved);
+			round = Integer.parseInt(saved.getProperty("tuner.round", "0"));
+			step = Integer.parseInt(saved.getProperty("tuner.step", Integer.toString(step)));
+			System.out.println("Continuing from " + checkpoint + ": round " + round + ", step " + step);
+		}
+		Score bestScore = this.score(best, best);
+		System.out.println("Start: " + best + " -> " + bestScore);
+		while (step > 0 && round < MAX_ROUNDS) {
+			// the opponent of this round, every candidate plays the same games against it
+			TicTacToeWeights reference = best;
+			boolean changed = false;
+			for (int i = 0; i < TicTacToeWeights.COUNT; ++i) {
+				for (int direction = 1; direction >= -1; direction -= 2) {
+					int value = best.get(i) + direction * step;
+					if (value < MIN_WEIGHT || value > MAX_WEIGHT) {
+						continue;
+					}
+					TicTacToeWeights candidate = best.with(i, value);
+					Score score = this.score(candidate, reference);
+					System.out.printf("Round %d, step %d: %s %d -> %d: %s%n",
+							round, step, TicTacToeWeights.name(i), best.get(i), value, score);
+					if (score.getScore() > bestScore.getScore()) {
+						best = candidate;
+						bestScore = score;
+						changed = true;
+						System.out.println("New best: " + best + " -> " + bestScore);
+						this.checkpoint(checkpoint, best, bestScore, round, step);
+						break;
+					}
+				}
+			}
+			if (!changed) {
+				step /= 2;
+			}
+			++round;
+			if (changed) {
+				// the next round plays against the new best
+				bestScore = this.score(best, best);
+			}
+			this.checkpoint(checkpoint, best, bestScore, round, step);
+		}
+		if (step > 0) {
+			System.out.println("Stopped after " + MAX_ROUNDS + " rounds");
+		}
+		return best;
+	}
+
+	private void checkpoint(Path checkpoint, TicTacToeWeights best, Score score, int round, int step) throws IOException {
+		if (checkpoint == null) {
+			return;
+		}
+		Properties properties = new Properties();
+		best.toProperties(properties);
+		properties.setProperty("tuner.round", Integer.toString(round));
+		properties.setProperty("tuner.step", Integer.toString(step));
+		properties.setProperty("tuner.games", Long.toString(this.games));
+		properties.setProperty("tuner.seed", Long.toString(this.seed));
+		properties.setProperty("tuner.score", Long.toString(score.getScore()));
+		TicTacToeWeights.store(properties, checkpoint, "TicTacToeTuner checkpoint");
+	}
+
+	/**
+	 *
+	 * The results of the games of one set of weights
+	 *
+	 */
+	public static class Score {
+		private long games;
+		private long wins;
+		private long draws;
+		private long losses;
+
+		private void add(int winner) {
+			++this.games;
+			if (winner == 2) {
+				++this.wins;
+			} else if (winner == 1) {
+				++this.losses;
+			} else {
+				++this.draws;
+			}
+		}
+
+		private Score merge(Score other) {
+			this.games += other.games;
+			this.wins += other.wins;
+			this.draws += other.draws;
+			this.losses += other.losses;
+			return this;
+		}
+
+		public long getGames() {
+			return this.games;
+		}
+
+		public long getWins() {
+			return this.wins;
+		}
+
+		public long getDraws() {
+			return this.draws;
+		}
+
+		public long getLosses() {
+			return this.losses;
+		}
+
+		/**
+		 * @return WIN_SCORE for every win plus LOSS_SCORE for every loss
+		 */
+		public long getScore() {
+			return this.wins * WIN_SCORE + this.losses * LOSS_SCORE;
+		}
+
+		@Override
+		public String toString() {
+			return "score " + this.getScore() + " (" + this.wins + " wins, " + this.draws + " draws, "
+					+ this.losses + " losses)";
+		}
+	}
+
+	/**
+	 *
+	 * Plays the games from (inclusive) to to (exclusive), splitting
+	 * the range in half while it is larger than THRESHOLD.
+	 *
+	 */
+	private class ScoreTask extends RecursiveTask<Score> {
+		private static final long serialVersionUID = 1L;
+		private final TicTacToeStrategy ai;
+		private final TicTacToeStrategy reference;
+		private final long from;
+		private final long to;
+
+		ScoreTask(TicTacToeStrategy ai, TicTacToeStrategy reference, long from, long to) {
+			this.ai = ai;
+			this.reference = reference;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Score compute() {
+			if (this.to - this.from <= THRESHOLD) {
+				Score score = new Score();
+				TicTacToeGameState state = new TicTacToeGameState();
+				for (long game = this.from; game < this.to; ++game) {
+					score.add(play(game, this.ai, this.reference, state));
+				}
+				return score;
+			}
+			long middle = (this.from + this.to) >>> 1;
+			ScoreTask left = new ScoreTask(this.ai, this.reference, this.from, middle);
+			left.fork();
+			Score right = new ScoreTask(this.ai, this.reference, middle, this.to).compute();
+			return left.join().merge(right);
+		}
+	}
+
+	/**
+	 * Tunes the weights and writes the best ones to a file that
+	 * TicTacToeController can load, see TicTacToeWeights.load().
+	 *
+	 * @param args games per candidate (default 200000), output file
+	 * (default tictactoe.weights), checkpoint file (default
+	 * tictactoe.tuner), number of threads (default all cores),
+	 * percent of random opponent moves (default 25), seed (default 1)
+	 * @throws IOException if the checkpoint or the output cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		long games = args.length > 0 ? Long.parseLong(args[0]) : 200000L;
+		Path output = Paths.get(args.length > 1 ? args[1] : DEFAULT_OUTPUT);
+		Path checkpoint = Paths.get(args.length > 2 ? args[2] : DEFAULT_CHECKPOINT);
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		int noise = args.length > 4 ? Integer.parseInt(args[4]) : 25;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 1L;
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		TicTacToeWeights best;
+		try {
+			best = new TicTacToeTuner(games, seed, noise, pool).tune(TicTacToeWeights.DEFAULT, 8, checkpoint);
+		} finally {
+			pool.shutdown();
+		}
+		best.store(output, "TicTacToeTuner best weights");
+		System.out.printf("Tuned in %.1f s on %d threads%n", (System.nanoTime() - start) / 1e9, threads);
+		System.out.println("Best: " + best);
+		System.out.println("Written to " + output);
+	}
+}
@@ -1,38 +1,233 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
- * 
+ *
  * This class will be responsible for printing
  * the game board based on its current state
+ *
+ * A board is formatted in one pass into a StringBuilder that the view
+ * keeps and reuses, and is then written with a single call, so printing
+ * a board does not take the lock of System.out for every character.
+ * Because of the reused buffers a view must only be used by one thread
+ * at a time.
  */
 public class TicTacToeView {
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final StringBuilder text = new StringBuilder(64);
+	private ByteBuffer bytes = ByteBuffer.allocate(64);
+
 	/**
 	 * This will print the gameboard based on the state that
 	 * the board is in. For empty positions, it will be ' ' on
 	 * the board. For user, it will be 'X' on the board. For AI,
-	 * it will be 'O' on the board
-	 * 
+	 * it will be 'O' on the board. The board can be of any size,
+	 * a board with n rows and m columns is printed on a grid of
+	 * 2n - 1 by 2m - 1 characters.
+	 *
 	 * @param board game board
 	 */
 	public void printBoard(int [][] board) {
-		System.out.println("");
-		for (int i = 0; i < 5; ++i) {
-			for (int j = 0; j < 5; ++j) {
+		System.out.print(this.render(board));
+	}
+
+	/**
+	 * This render() method formats the board like printBoard() does,
+	 * including the empty line before it
+	 *
+	 * @param board game board
+	 * @return the text of the board, it is reused by the next call
+	 */
+	public CharSequence render(int[][] board) {
+		StringBuilder out = this.text;
+		out.setLength(0);
+		int rows = board.length * 2 - 1;
+		int columns = board[0].length * 2 - 1;
+		out.append(LINE_SEPARATOR);
+		for (int i = 0; i < rows; ++i) {
+			for (int j = 0; j < columns; ++j) {
 				if (j % 2 != 0) {
-					System.out.print("|");
+					out.append('|');
 				} else if (i % 2 != 0) {
-					System.out.print("-");
+					out.append('-');
 				} else {
-					int player = board[i/2][j/2];
-					if (player == 1) {
-						System.out.print("X");
-					} else if (player == 2) {
-						System.out.print("O");
-					} else {
-						System.out.print(" ");
-					}
+					out.append(symbol(board[i/2][j/2]));
+				}
+			}
+			out.append(LINE_SEPARATOR);
+		}
+		return out;
+	}
+
+	/**
+	 * Packed version of render() for the 3x3 board
+	 *
+	 * @param packed packed game board
+	 * @return the text of the board, it is reused by the next call
+	 */
+	public CharSequence render(int packed) {
+		StringBuilder out = this.text;
+		out.setLength(0);
+		out.append(LINE_SEPARATOR);
+		for (int row = 0; row < TicTacToeBitboard.ROWS.length; ++row) {
+			if (row != 0) {
+				out.append("-|-|-").append(LINE_SEPARATOR);
+			}
+			for (int col = 0; col < TicTacToeBitboard.COLUMNS.length; ++col) {
+				if (col != 0) {
+					out.append('|');
 				}
+				out.append(symbol(TicTacToeBitboard.get(packed, TicTacToeBitboard.cell(row, col))));
 			}
-			System.out.println("");
+			out.append(LINE_SEPARATOR);
+		}
+		return out;
+	}
+
+	/**
+	 * This renderQubic() method formats a Qubic board (see
+	 * TicTacToeQubicBoard) as its 4 levels side by side, each like a
+	 * board of printBoard()
+	 *
+	 * @param user user's pieces
+	 * @param ai AI's pieces
+	 * @return the text of the board, it is reused by the next call
+	 */
+	public CharSequence renderQubic(long user, long ai) {
+		StringBuilder out = this.text;
+		out.setLength(0);
+		out.append(LINE_SEPARATOR);
+		int size = TicTacToeQubicBoard.SIZE;
+		for (int level = 0; level < size; ++level) {
+			out.append(level == 0 ? "" : "   ").append("Level ").append(level);
+		}
+		out.append(LINE_SEPARATOR);
+		for (int row = 0; row < size; ++row) {
+			if (row != 0) {
+				for (int level = 0; level < size; ++level) {
+					out.append(level == 0 ? "" : "   ").append("-|-|-|-");
+				}
+				out.append(LINE_SEPARATOR);
+			}
+			for (int level = 0; level < size; ++level) {
+				out.append(level == 0 ? "" : "   ");
+				for (int col = 0; col < size; ++col) {
+					long bit = 1L << TicTacToeQubicBoard.cell(level, row, col);
+					out.append(col == 0 ? "" : "|").append((user & bit) != 0 ? 'X' : (ai & bit) != 0 ? 'O' : ' ');
+				}
+			}
+			out.append(LINE_SEPARATOR);
+		}
+		return out;
+	}
+
+	/**
+	 * This renderDelta() method formats only the cells that changed
+	 * between two boards, for clients that already have the earlier
+	 * board. Every changed cell is "row col symbol", separated by
+	 * spaces, for example "0 2 X 1 1 O". An unchanged board is empty.
+	 *
+	 * @param before packed board the client has
+	 * @param after packed board now
+	 * @return the changed cells, it is reused by the next call
+	 */
+	public CharSequence renderDelta(int before, int after) {
+		StringBuilder out = this.text;
+		out.setLength(0);
+		int changed = before ^ after;
+		changed = (changed | (changed >>> TicTacToeBitboard.SHIFT)) & TicTacToeBitboard.FULL;
+		while (changed != 0) {
+			int cell = Integer.numberOfTrailingZeros(changed);
+			changed &= changed - 1;
+			if (out.length() != 0) {
+				out.append(' ');
+			}
+			out.append(TicTacToeBitboard.row(cell)).append(' ').append(TicTacToeBitboard.column(cell))
+					.append(' ').append(symbol(TicTacToeBitboard.get(after, cell)));
+		}
+		return out;
+	}
+
+	/**
+	 * This appendCells() method appends the compact form of a board:
+	 * 9 characters row by row, 'X', 'O' or '.' for an empty cell
+	 *
+	 * @param packed packed game board
+	 * @param out where the cells are appended
+	 */
+	public static void appendCells(int packed, StringBuilder out) {
+		for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+			int player = TicTacToeBitboard.get(packed, cell);
+			out.append(player == 0 ? '.' : symbol(player));
+		}
+	}
+
+	/**
+	 * This writes the board like printBoard() with a single append
+	 *
+	 * @param board game board
+	 * @param out where the board is written, for example a Writer
+	 * @throws IOException if out cannot be written
+	 */
+	public void writeBoard(int[][] board, Appendable out) throws IOException {
+		out.append(this.render(board));
+	}
+
+	/**
+	 * This writes the board like printBoard() to a channel
+	 *
+	 * @param board game board
+	 * @param channel where the board is written
+	 * @throws IOException if the channel cannot be written
+	 */
+	public void writeBoard(int[][] board, WritableByteChannel channel) throws IOException {
+		this.write(this.render(board), channel);
+	}
+
+	/**
+	 * This writes the changed cells of renderDelta() and a newline
+	 * to a channel
+	 *
+	 * @param before packed board the client has
+	 * @param after packed board now
+	 * @param channel where the delta is written
+	 * @throws IOException if the channel cannot be written
+	 */
+	public void writeDelta(int before, int after, WritableByteChannel channel) throws IOException {
+		this.renderDelta(before, after);
+		this.write(this.text.append('\n'), channel);
+	}
+
+	/**
+	 * Copies ASCII text into the reused byte buffer and writes it, a
+	 * blocking channel takes it in one write(), a non-blocking one
+	 * may need a few
+	 */
+	private void write(CharSequence text, WritableByteChannel channel) throws IOException {
+		int length = text.length();
+		if (this.bytes.capacity() < length) {
+			this.bytes = ByteBuffer.allocate(Math.max(length, this.bytes.capacity() * 2));
+		}
+		ByteBuffer out = this.bytes;
+		out.clear();
+		for (int i = 0; i < length; ++i) {
+			out.put((byte) text.charAt(i));
+		}
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+	}
+
+	private static char symbol(int player) {
+		if (player == 1) {
+			return 'X';
+		} else if (player == 2) {
+			return 'O';
 		}
+		return ' ';
 	}
 }
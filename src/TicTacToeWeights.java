@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ *
+ * This class holds the weights of the heuristics in
+ * TicTacToeController. userWillDefend() rates the risk of a move as
+ * noThreatRisk when the user has nothing to defend, threatRisk when
+ * the user must defend one cell, and forkRisk times the number of wins
+ * when defending gives the user a fork. selectBasedOnHeuristics() then
+ * picks the move with the lowest riskWeight * risk - attack, where
+ * attack is lineWeight for every open row and column and
+ * diagonalWeight for every open diagonal through the cell.
+ *
+ * DEFAULT reproduces the original rules: lowest risk first, then the
+ * highest attack heuristic. Weights are immutable and are saved as a
+ * properties file, see load() and store().
+ *
+ */
+public final class TicTacToeWeights {
+
+	public static final int NO_THREAT_RISK = 0;
+	public static final int THREAT_RISK = 1;
+	public static final int FORK_RISK = 2;
+	public static final int RISK_WEIGHT = 3;
+	public static final int LINE_WEIGHT = 4;
+	public static final int DIAGONAL_WEIGHT = 5;
+	public static final int COUNT = 6;
+
+	// riskWeight 5 is more than the largest attack heuristic (4), so risk always comes first
+	public static final TicTacToeWeights DEFAULT = new TicTacToeWeights(10, 0, 1, 5, 1, 1);
+
+	private static final String[] NAMES = {
+		"noThreatRisk", "threatRisk", "forkRisk", "riskWeight", "lineWeight", "diagonalWeight"
+	};
+
+	private final int noThreatRisk;
+	private final int threatRisk;
+	private final int forkRisk;
+	private final int riskWeight;
+	private final int lineWeight;
+	private final int diagonalWeight;
+
+	public TicTacToeWeights(int noThreatRisk, int threatRisk, int forkRisk,
+			int riskWeight, int lineWeight, int diagonalWeight) {
+		this.noThreatRisk = noThreatRisk;
+		this.threatRisk = threatRisk;
+		this.forkRisk = forkRisk;
+		this.riskWeight = riskWeight;
+		this.lineWeight = lineWeight;
+		this.diagonalWeight = diagonalWeight;
+	}
+
+	/**
+	 * @param values the weights in the order of the index constants
+	 * @return the weights
+	 */
+	public static TicTacToeWeights of(int[] values) {
+		if (values.length != COUNT) {
+			throw new IllegalArgumentException("Expected " + COUNT + " weights, got " + values.length);
+		}
+		return new TicTacToeWeights(values[NO_THREAT_RISK], values[THREAT_RISK], values[FORK_RISK],
+				values[RISK_WEIGHT], values[LINE_WEIGHT], values[DIAGONAL_WEIGHT]);
+	}
+
+	public int getNoThreatRisk() {
+		return this.noThreatRisk;
+	}
+
+	public int getThreatRisk() {
+		return this.threatRisk;
+	}
+
+	public int getForkRisk() {
+		return this.forkRisk;
+	}
+
+	public int getRiskWeight() {
+		return this.riskWeight;
+	}
+
+	public int getLineWeight() {
+		return this.lineWeight;
+	}
+
+	public int getDiagonalWeight() {
+		return this.diagonalWeight;
+	}
+
+	/**
+	 * @return the weights in the order of the index constants
+	 */
+	public int[] toArray() {
+		return new int[] {this.noThreatRisk, this.threatRisk, this.forkRisk,
+				this.riskWeight, this.lineWeight, this.diagonalWeight};
+	}
+
+	/**
+	 * @param index one of the index constants
+	 * @return the weight
+	 */
+	public int get(int index) {
+		return this.toArray()[index];
+	}
+
+	/**
+	 * @param index one of the index constants
+	 * @param value new value of that weight
+	 * @return weights with one weight changed
+	 */
+	public TicTacToeWeights with(int index, int value) {
+		int[] values = this.toArray();
+		values[index] = value;
+		return of(values);
+	}
+
+	/**
+	 * @param index one of the index constants
+	 * @return the name of the weight in a properties file
+	 */
+	public static String name(int index) {
+		return NAMES[index];
+	}
+
+	/**
+	 * This fromProperties() method reads the weights, a missing weight
+	 * keeps its DEFAULT value
+	 *
+	 * @param properties weights by name()
+	 * @return the weights
+	 */
+	public static TicTacToeWeights fromProperties(Properties properties) {
+		int[] values = DEFAULT.toArray();
+		for (int i = 0; i < COUNT; ++i) {
+			String value = properties.getProperty(NAMES[i]);
+			if (value != null) {
+				try {
+					values[i] = Integer.parseInt(value.trim());
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Weight " + NAMES[i] + " must be an integer: " + value);
+				}
+			}
+		}
+		return of(values);
+	}
+
+	/**
+	 * @param properties where the weights are put by name()
+	 */
+	public void toProperties(Properties properties) {
+		int[] values = this.toArray();
+		for (int i = 0; i < COUNT; ++i) {
+			properties.setProperty(NAMES[i], Integer.toString(values[i]));
+		}
+	}
+
+	/**
+	 * This load() method reads weights saved by store(). Other keys in
+	 * the file are ignored.
+	 *
+	 * @param path weights file
+	 * @return the weights
+	 * @throws IOException if the file cannot be read
+	 */
+	public static TicTacToeWeights load(Path path) throws IOException {
+		Properties properties = new Properties();
+		try (Reader in = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1)) {
+			properties.load(in);
+		}
+		return fromProperties(properties);
+	}
+
+	/**
+	 * This store() method saves properties to a file. They are written
+	 * to a temporary file next to it first, so a crash never leaves a
+	 * half written file.
+	 *
+	 * @param properties properties to save, usually filled by toProperties()
+	 * @param path file to write
+	 * @param comment comment at the top of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void store(Properties properties, Path path, String comment) throws IOException {
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.ISO_8859_1)) {
+			properties.store(out, comment);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @param path file to write
+	 * @param comment comment at the top of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void store(Path path, String comment) throws IOException {
+		Properties properties = new Properties();
+		this.toProperties(properties);
+		store(properties, path, comment);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof TicTacToeWeights && Arrays.equals(this.toArray(), ((TicTacToeWeights) other).toArray());
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.toArray());
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		int[] values = this.toArray();
+		for (int i = 0; i < COUNT; ++i) {
+			text.append(i == 0 ? "" : ", ").append(NAMES[i]).append('=').append(values[i]);
+		}
+		return text.toString();
+	}
+}
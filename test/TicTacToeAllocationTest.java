@@ -0,0 +1,66 @@
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ *
+ * Checks that the packed decision path of TicTacToeController does not
+ * allocate, by reading the bytes allocated by the test thread from
+ * com.sun.management.ThreadMXBean. JVMs without that counter skip it.
+ *
+ */
+public class TicTacToeAllocationTest {
+
+	// boards where the AI is to move, the decision path runs on all of them
+	private static final int[] BOARDS = aiToMoveBoards();
+
+	private static int[] aiToMoveBoards() {
+		int count = 0;
+		int[] boards = new int[TicTacToeBitboard.POSITIONS];
+		for (int index = 0; index < TicTacToeBitboard.POSITIONS; ++index) {
+			int packed = TicTacToeBitboard.fromIndex(index);
+			if (TicTacToePerfectStrategy.isAIToMove(packed)) {
+				boards[count++] = packed;
+			}
+		}
+		return Arrays.copyOf(boards, count);
+	}
+
+	@Test
+	public void packedDecisionsDoNotAllocate() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long id = Thread.currentThread().getId();
+		TicTacToeController controller = new TicTacToeController();
+
+		// warm up until the JIT has compiled the path, then measure
+		long sink = 0;
+		for (int round = 0; round < 20; ++round) {
+			sink += decide(controller);
+		}
+		long before = threads.getThreadAllocatedBytes(id);
+		for (int round = 0; round < 10; ++round) {
+			sink += decide(controller);
+		}
+		long allocated = threads.getThreadAllocatedBytes(id) - before;
+		assertTrue("the calls were made", sink > 0);
+		// reading the counter itself may allocate a little, one int[2] per call would be over 2 MB
+		assertTrue(allocated + " bytes allocated by " + 10 * BOARDS.length * 3 + " calls", allocated < 1024);
+	}
+
+	private static long decide(TicTacToeController controller) {
+		long sum = 0;
+		for (int packed : BOARDS) {
+			sum += controller.selectBasedOnHeuristics(packed) + controller.getAIMove(packed)
+					+ controller.getAIPosition(packed);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,126 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ *
+ * Checks TicTacToeDeadline and the searches that use it on a clock
+ * that only moves when the test says so.
+ *
+ */
+public class TicTacToeDeadlineTest {
+
+	/**
+	 * A clock that stands still until advance() is called, or until it
+	 * has been read a given number of times
+	 */
+	private static final class ManualClock implements TicTacToeClock {
+		private long now = 1000;
+		private long reads = 0;
+		private long alarmReads = -1;
+		private long alarmNanos = 0;
+
+		void advance(long nanos) {
+			this.now += nanos;
+		}
+
+		/**
+		 * The time jumps by nanos at the reads-th read from now
+		 */
+		void advanceAfterReads(long reads, long nanos) {
+			this.alarmReads = this.reads + reads;
+			this.alarmNanos = nanos;
+		}
+
+		@Override
+		public long nanoTime() {
+			if (++this.reads == this.alarmReads) {
+				this.now += this.alarmNanos;
+			}
+			return this.now;
+		}
+	}
+
+	@Test
+	public void expiresWhenTheBudgetIsUsed() {
+		ManualClock clock = new ManualClock();
+		TicTacToeDeadline deadline = new TicTacToeDeadline(clock, 100);
+		assertFalse(deadline.isExpired());
+		assertEquals(100, deadline.remainingNanos());
+		clock.advance(99);
+		assertFalse(deadline.isExpired());
+		assertEquals(1, deadline.remainingNanos());
+		clock.advance(1);
+		assertTrue(deadline.isExpired());
+		assertEquals(0, deadline.remainingNanos());
+		assertFalse(deadline.isCancelled());
+	}
+
+	@Test
+	public void cancelExpiresAtOnce() {
+		TicTacToeDeadline deadline = new TicTacToeDeadline(new ManualClock(), 100);
+		deadline.cancel();
+		assertTrue(deadline.isCancelled());
+		assertTrue(deadline.isExpired());
+		assertEquals(0, deadline.remainingNanos());
+	}
+
+	@Test
+	public void expiryBeforeDepthOne() {
+		ManualClock clock = new ManualClock();
+		TicTacToeDeadline deadline = new TicTacToeDeadline(clock, 100);
+		clock.advance(100);
+		TicTacToeSearchEngine.Result result = new TicTacToeSearchEngine().search(
+				new TicTacToeGeneralBoard(TicTacToeGeometry.CLASSIC), 2, deadline);
+		assertEquals(-1, result.getMove());
+		assertEquals(0, result.getDepth());
+		assertTrue(result.isTimedOut());
+
+		// the controller falls back to its heuristic move
+		TicTacToeController controller = new TicTacToeController();
+		int packed = TicTacToeBitboard.place(TicTacToeBitboard.EMPTY, 0, 1);
+		int heuristic = controller.getAIMove(packed);
+		controller.setStrategy(new TicTacToeSearchStrategy());
+		assertEquals(heuristic, controller.getAIPosition(packed, deadline));
+	}
+
+	@Test
+	public void expiryMidIterationKeepsThePreviousDepth() {
+		TicTacToeGeometry geometry = TicTacToeGeometry.of(4, 4, 4);
+		TicTacToeGeneralBoard board = new TicTacToeGeneralBoard(geometry);
+		board.apply(5, 1);
+
+		// look at the deadline more and more often until a search is cut off after depth 2
+		TicTacToeSearchEngine.Result result = null;
+		for (long reads = 2; reads < (1L << 24); reads *= 2) {
+			ManualClock clock = new ManualClock();
+			TicTacToeDeadline deadline = new TicTacToeDeadline(clock, 100);
+			clock.advanceAfterReads(reads, 100);
+			result = new TicTacToeSearchEngine(geometry, geometry.getCells(), 16).search(board, 2, deadline);
+			if (result.getDepth() >= 2) {
+				break;
+			}
+		}
+		assertTrue(result.isTimedOut());
+		assertTrue(result.getDepth() >= 2);
+		assertEquals("the board is back as it was", 1, board.getMoveCount());
+
+		// the move is the one of the last completed depth
+		TicTacToeSearchEngine.Result completed = new TicTacToeSearchEngine(geometry, result.getDepth(), 16).search(board, 2);
+		assertFalse(completed.isTimedOut());
+		assertEquals(result.getDepth(), completed.getDepth());
+		assertEquals(completed.getMove(), result.getMove());
+		assertEquals(completed.getScore(), result.getScore());
+	}
+
+	@Test
+	public void searchWithTimeLeftIsNotTimedOut() {
+		TicTacToeDeadline deadline = new TicTacToeDeadline(new ManualClock(), 100);
+		TicTacToeSearchEngine.Result result = new TicTacToeSearchEngine().search(
+				new TicTacToeGeneralBoard(TicTacToeGeometry.CLASSIC), 2, deadline);
+		assertFalse(result.isTimedOut());
+		assertTrue(result.getMove() != -1);
+	}
+}
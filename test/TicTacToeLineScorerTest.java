@@ -0,0 +1,43 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ *
+ * Checks the batch scores of TicTacToeLineScorer against the scalar
+ * methods of TicTacToeController on every board with an AI piece.
+ *
+ */
+public class TicTacToeLineScorerTest {
+
+	@Test
+	public void batchScoresMatchController() {
+		checkAgainstController(TicTacToeWeights.DEFAULT);
+	}
+
+	@Test
+	public void batchRiskUsesWeights() {
+		checkAgainstController(new TicTacToeWeights(7, 3, 5, 2, 1, 4));
+	}
+
+	private static void checkAgainstController(TicTacToeWeights weights) {
+		TicTacToeController controller = new TicTacToeController();
+		controller.setWeights(weights);
+		int[] packed = new int[1 << 18];
+		int[] cells = new int[1 << 18];
+		int count = TicTacToeLineScorer.boardsWithAIMove(packed, cells);
+		int[] user = new int[count];
+		int[] ai = new int[count];
+		int[] attack = new int[count];
+		int[] risk = new int[count];
+		int[] scratch = new int[count];
+		TicTacToeLineScorer.split(packed, user, ai, count);
+		TicTacToeLineScorer.attackHeuristic(user, cells, attack, count);
+		TicTacToeLineScorer.userWillDefend(user, ai, risk, scratch, count, weights);
+		for (int i = 0; i < count; ++i) {
+			String board = Integer.toHexString(packed[i]);
+			assertEquals("attack on " + board, controller.calculateAttackHeuristic(cells[i], packed[i]), attack[i]);
+			assertEquals("risk on " + board, controller.userWillDefend(packed[i]), risk[i]);
+		}
+	}
+}
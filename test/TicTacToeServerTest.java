@@ -0,0 +1,99 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * Checks that TicTacToeServer answers commands that a client sends
+ * in one write without waiting for the replies.
+ *
+ */
+public class TicTacToeServerTest {
+
+	private TicTacToeServer server;
+
+	@Before
+	public void start() throws IOException {
+		this.server = new TicTacToeServer(0, 60000, 16);
+		new Thread(this.server, "server").start();
+	}
+
+	@After
+	public void stop() {
+		this.server.stop();
+	}
+
+	@Test
+	public void answersPipelinedCommands() throws IOException {
+		for (int count : new int[] {10, 100, 300, 1000}) {
+			assertEquals(count, this.pipeline("STATS\n", count, "STATS "));
+		}
+	}
+
+	@Test
+	public void answersPipelinedGames() throws IOException {
+		// every command is answered, the moves after the end of a game with an error
+		assertEquals(500, this.pipeline("NEW u\nMOVE 0 0\nMOVE 1 1\nMOVE 2 2\nMOVE 0 2\n", 100, ""));
+	}
+
+	@Test
+	public void reportsBytesPerSession() throws IOException {
+		try (Socket socket = new Socket("127.0.0.1", this.server.getPort())) {
+			socket.setSoTimeout(5000);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			socket.getOutputStream().write("STATS\n".getBytes(StandardCharsets.US_ASCII));
+			String reply = reader.readLine();
+			long perMillion = -1;
+			for (String field : reply.split(" ")) {
+				if (field.startsWith("bytesPerMillionSessions=")) {
+					perMillion = Long.parseLong(field.substring(field.indexOf('=') + 1));
+				}
+			}
+			assertEquals(this.server.getBytesPerMillionSessions(), perMillion);
+			// at least the input and output buffers of the connection and its slot in the store
+			assertTrue(reply, perMillion >= (2 * 4096 + 4) * 1000000L);
+		}
+	}
+
+	/**
+	 * Sends the commands count times in one write and reads the replies
+	 *
+	 * @return number of replies read before the server stopped answering
+	 */
+	private int pipeline(String commands, int count, String prefix) throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < count; ++i) {
+			text.append(commands);
+		}
+		int lines = count * (commands.length() - commands.replace("\n", "").length());
+		try (Socket socket = new Socket("127.0.0.1", this.server.getPort())) {
+			socket.setSoTimeout(5000);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			socket.getOutputStream().write(text.toString().getBytes(StandardCharsets.US_ASCII));
+			int replies = 0;
+			try {
+				while (replies < lines) {
+					String reply = reader.readLine();
+					if (reply == null) {
+						break;
+					}
+					assertTrue(reply, reply.startsWith(prefix));
+					++replies;
+				}
+			} catch (SocketTimeoutException e) {
+				// the server stopped answering
+			}
+			return replies;
+		}
+	}
+}
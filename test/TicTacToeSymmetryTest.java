@@ -0,0 +1,108 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ *
+ * Checks TicTacToeSymmetry on every board that can come up in a game,
+ * with either player moving first, and on all 8 symmetric images of it.
+ *
+ */
+public class TicTacToeSymmetryTest {
+
+	// reachable[index] = the board with that base 3 index can come up in a game
+	private static final boolean[] REACHABLE = new boolean[TicTacToeBitboard.POSITIONS];
+
+	static {
+		play(TicTacToeBitboard.EMPTY, 1);
+		play(TicTacToeBitboard.EMPTY, 2);
+	}
+
+	private static void play(int packed, int player) {
+		int index = TicTacToeBitboard.index(packed);
+		if (REACHABLE[index] && packed != TicTacToeBitboard.EMPTY) {
+			return;
+		}
+		REACHABLE[index] = true;
+		if (TicTacToeBitboard.isWin(TicTacToeBitboard.mask(packed, 3 - player))) {
+			return;
+		}
+		for (int empty = TicTacToeBitboard.emptyCells(packed); empty != 0; empty &= empty - 1) {
+			play(TicTacToeBitboard.place(packed, Integer.numberOfTrailingZeros(empty), player), 3 - player);
+		}
+	}
+
+	@Test
+	public void transformsRoundTrip() {
+		for (int index = 0; index < TicTacToeBitboard.POSITIONS; ++index) {
+			if (!REACHABLE[index]) {
+				continue;
+			}
+			int packed = TicTacToeBitboard.fromIndex(index);
+			int canonicalBoard = TicTacToeSymmetry.canonicalBoard(TicTacToeSymmetry.canonicalize(packed));
+			for (int t = 0; t < TicTacToeSymmetry.TRANSFORMS; ++t) {
+				int image = TicTacToeSymmetry.transform(packed, t);
+				int canonical = TicTacToeSymmetry.canonicalize(image);
+				int transform = TicTacToeSymmetry.transformOf(canonical);
+				String board = describe(image);
+				// every image has the same canonical board
+				assertEquals("canonical board of " + board, canonicalBoard, TicTacToeSymmetry.canonicalBoard(canonical));
+				assertEquals("canonical transform of " + board, canonicalBoard, TicTacToeSymmetry.transform(image, transform));
+				for (int cell = 0; cell < TicTacToeBitboard.CELLS; ++cell) {
+					int mapped = TicTacToeSymmetry.mapCell(cell, transform);
+					assertEquals("cell " + cell + " of " + board, TicTacToeBitboard.get(image, cell),
+							TicTacToeBitboard.get(canonicalBoard, mapped));
+					assertEquals("cell " + cell + " back from " + board, cell, TicTacToeSymmetry.toOriginalCell(mapped, transform));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void mappedMoveMatchesDirectMove() {
+		// the perfect strategy breaks ties by the lowest cell, which is not
+		// symmetric, so the two moves are compared by their value
+		TicTacToePerfectStrategy strategy = new TicTacToePerfectStrategy();
+		for (int index = 0; index < TicTacToeBitboard.POSITIONS; ++index) {
+			int packed = TicTacToeBitboard.fromIndex(index);
+			if (!REACHABLE[index] || !TicTacToePerfectStrategy.isAIToMove(packed)) {
+				continue;
+			}
+			for (int t = 0; t < TicTacToeSymmetry.TRANSFORMS; ++t) {
+				int image = TicTacToeSymmetry.transform(packed, t);
+				int move = TicTacToeSymmetry.findMove(strategy, image);
+				int direct = strategy.selectMove(image);
+				String board = describe(image);
+				assertTrue("move " + move + " on " + board, move >= 0 && move < TicTacToeBitboard.CELLS);
+				assertEquals("move " + move + " on " + board, 0, TicTacToeBitboard.get(image, move));
+				assertEquals("value of the direct move " + direct + " on " + board,
+						strategy.getValue(image), valueOfMove(strategy, image, direct));
+				assertEquals("value of move " + move + " against " + direct + " on " + board,
+						valueOfMove(strategy, image, direct), valueOfMove(strategy, image, move));
+			}
+		}
+	}
+
+	/**
+	 * @return WIN, DRAW or LOSS for the AI after it moves to the cell
+	 * and both sides play perfectly from there
+	 */
+	private static int valueOfMove(TicTacToePerfectStrategy strategy, int packed, int cell) {
+		int after = TicTacToeBitboard.place(packed, cell, 2);
+		if (TicTacToeBitboard.isWin(TicTacToeBitboard.mask(after, 2))) {
+			return TicTacToePerfectStrategy.WIN;
+		}
+		if (TicTacToeBitboard.emptyCells(after) == 0) {
+			return TicTacToePerfectStrategy.DRAW;
+		}
+		// the user moves next, swapped so the table sees it as the AI's turn
+		return -strategy.getValue(TicTacToeBitboard.swap(after));
+	}
+
+	private static String describe(int packed) {
+		StringBuilder text = new StringBuilder();
+		TicTacToeView.appendCells(packed, text);
+		return text.toString();
+	}
+}